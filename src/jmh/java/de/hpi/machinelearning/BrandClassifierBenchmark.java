@@ -0,0 +1,113 @@
+package de.hpi.machinelearning;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.text.documentiterator.LabelledDocument;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.primitives.Pair;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the steps of classifying the brand of one offer title: building the centroid of the title and scoring it
+ * against all labels.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BrandClassifierBenchmark {
+
+    private static final int TITLES = 1024;
+
+    @Param({"1000", "10000"})
+    private int labels;
+
+    private MeansBuilder meansBuilder;
+    private MeansBuilder cachingMeansBuilder;
+    private LabelSeeker labelSeeker;
+    private LabelledDocument[] documents;
+    private List<String> titles;
+    private INDArray[] centroids;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        ParagraphVectors vectors = SyntheticParagraphVectors.create(labels, 42);
+        InMemoryLookupTable<VocabWord> lookupTable = (InMemoryLookupTable<VocabWord>) vectors.getLookupTable();
+        meansBuilder = new MeansBuilder(lookupTable, new DefaultTokenizerFactory());
+        cachingMeansBuilder = new MeansBuilder(lookupTable, new DefaultTokenizerFactory(), TITLES);
+        labelSeeker = new LabelSeeker(vectors.getLabelsSource().getLabels(), lookupTable);
+
+        SyntheticOffers offers = new SyntheticOffers(42);
+        documents = new LabelledDocument[TITLES];
+        centroids = new INDArray[TITLES];
+        titles = new ArrayList<>(TITLES);
+        for(int i = 0; i < TITLES; i++) {
+            documents[i] = new LabelledDocument();
+            documents[i].setContent(offers.title());
+            titles.add(documents[i].getContent());
+            centroids[i] = meansBuilder.documentAsVector(documents[i]);
+        }
+    }
+
+    @Benchmark
+    public INDArray documentAsVector() {
+        return meansBuilder.documentAsVector(documents[nextIndex()]);
+    }
+
+    @Benchmark
+    public INDArray documentAsVectorCached() {
+        return cachingMeansBuilder.documentAsVector(documents[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Pair<String, Double>> getScores() {
+        return labelSeeker.getScores(centroids[nextIndex()]);
+    }
+
+    @Benchmark
+    public Pair<String, Double> getBestLabel() {
+        return labelSeeker.getBestLabel(centroids[nextIndex()]);
+    }
+
+    @Benchmark
+    public List<Pair<String, Double>> getTopLabels() {
+        return labelSeeker.getTopLabels(centroids[nextIndex()], 10);
+    }
+
+    /**
+     * Classifies all titles one by one.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TITLES)
+    public List<Pair<String, Double>> classifySingleTitles() {
+        List<Pair<String, Double>> brands = new ArrayList<>(TITLES);
+        for(LabelledDocument document : documents) {
+            brands.add(labelSeeker.getBestLabel(meansBuilder.documentAsVector(document)));
+        }
+        return brands;
+    }
+
+    /**
+     * Classifies all titles with one batch of centroids.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TITLES)
+    public List<Pair<String, Double>> classifyTitleBatch() {
+        return labelSeeker.getBestLabels(meansBuilder.documentsAsMatrix(titles));
+    }
+
+    private int nextIndex() {
+        next = (next + 1) % TITLES;
+        return next;
+    }
+}
@@ -0,0 +1,81 @@
+package de.hpi.machinelearning;
+
+import de.hpi.machinelearning.persistence.AttributeVector;
+import de.hpi.machinelearning.persistence.FeatureInstance;
+import de.hpi.machinelearning.persistence.FeatureMatrix;
+import de.hpi.modelgenerator.persistence.ParsedOffer;
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import org.openjdk.jmh.annotations.*;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the feature matrix with one Weka instance (and header) per offer pair.
+ * Run with the GC profiler (enabled in the jmh profile) to compare the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FeatureMatrixBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private ShopOffer[] shopOffers;
+    private ParsedOffer[] parsedOffers;
+
+    @Setup
+    public void setup() {
+        SyntheticOffers offers = new SyntheticOffers(42);
+        shopOffers = new ShopOffer[ROWS];
+        parsedOffers = new ParsedOffer[ROWS];
+        for(int i = 0; i < ROWS; i++) {
+            shopOffers[i] = offers.shopOffer();
+            parsedOffers[i] = offers.parsedOffer(shopOffers[i]);
+        }
+    }
+
+    @Benchmark
+    public Instances featureMatrix() {
+        FeatureMatrix matrix = new FeatureMatrix(ROWS);
+        for(int i = 0; i < ROWS; i++) {
+            matrix.setRow(i, shopOffers[i], parsedOffers[i], true, shopOffers[i].getBrandName());
+        }
+        return matrix.toInstances();
+    }
+
+    @Benchmark
+    public Instances featureInstances() {
+        Instances dataSet = new Instances("Rel", new AttributeVector(), ROWS);
+        for(int i = 0; i < ROWS; i++) {
+            dataSet.add(new FeatureInstance(shopOffers[i], parsedOffers[i], true, shopOffers[i].getBrandName()));
+        }
+        dataSet.setClassIndex(FeatureMatrix.CLASS_INDEX);
+        return dataSet;
+    }
+
+    /**
+     * Former construction of a feature instance with its own attributes and header.
+     */
+    @Benchmark
+    public Instances instancesWithOwnHeader() {
+        Instances dataSet = new Instances("Rel", new AttributeVector(), ROWS);
+        for(int i = 0; i < ROWS; i++) {
+            ArrayList<Attribute> features = new AttributeVector();
+            Instances header = new Instances("Rel", features, 1);
+            header.setClassIndex(FeatureMatrix.CLASS_INDEX);
+            DenseInstance instance = new DenseInstance(1d, new FeatureInstance(shopOffers[i], parsedOffers[i], true,
+                    shopOffers[i].getBrandName()).toDoubleArray());
+            instance.setDataset(header);
+            dataSet.add(instance);
+        }
+        dataSet.setClassIndex(FeatureMatrix.CLASS_INDEX);
+        return dataSet;
+    }
+}
@@ -0,0 +1,71 @@
+package de.hpi.machinelearning;
+
+import de.hpi.modelgenerator.persistence.MatchingResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the index based training/testing split with the former LinkedList based split.
+ * The LinkedList split is quadratic, so it is only measured up to 500k results.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class IndexSamplerBenchmark {
+
+    private static final double TRAINING_SET_PERCENTAGE = 0.9;
+
+    @State(Scope.Benchmark)
+    public static class Results {
+
+        @Param({"100000", "500000", "2000000"})
+        int size;
+
+        List<MatchingResult> results;
+
+        @Setup
+        public void setup() {
+            results = IntStream.range(0, size).mapToObj(i -> new MatchingResult()).collect(Collectors.toList());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class LinkedResults {
+
+        @Param({"100000", "500000"})
+        int size;
+
+        List<MatchingResult> results;
+
+        @Setup
+        public void setup() {
+            results = IntStream.range(0, size).mapToObj(i -> new MatchingResult()).collect(Collectors.toCollection(LinkedList::new));
+        }
+    }
+
+    @Benchmark
+    public List<MatchingResult> indexSplit(Results state) {
+        int[] numbers = IndexSampler.shuffledIndices(state.results.size(), new Random(42));
+        int trainingSetSize = (int) (TRAINING_SET_PERCENTAGE * numbers.length);
+        List<MatchingResult> trainingSet = IndexSampler.select(state.results, numbers, 0, trainingSetSize);
+        List<MatchingResult> testingSet = IndexSampler.select(state.results, numbers, trainingSetSize, numbers.length);
+        return testingSet.isEmpty() ? trainingSet : testingSet;
+    }
+
+    @Benchmark
+    public List<MatchingResult> linkedListSplit(LinkedResults state) {
+        List<MatchingResult> completeDataSet = state.results;
+        List<Integer> numbers = IntStream.range(0, completeDataSet.size()).boxed().collect(Collectors.toCollection(LinkedList::new));
+        Collections.shuffle(numbers);
+        int trainingSetSize = (int) (TRAINING_SET_PERCENTAGE * numbers.size());
+        List<MatchingResult> trainingSet = IntStream.range(0, trainingSetSize).mapToObj(completeDataSet::get).collect(Collectors.toList());
+        List<MatchingResult> testingSet = IntStream.range(trainingSetSize, numbers.size()).mapToObj(completeDataSet::get).collect(Collectors.toList());
+        return testingSet.isEmpty() ? trainingSet : testingSet;
+    }
+}
@@ -0,0 +1,47 @@
+package de.hpi.machinelearning;
+
+import de.hpi.machinelearning.persistence.SerializedParagraphVectors;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures storing and loading the brand classifier as it is done by the model repositories.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerializedParagraphVectorsBenchmark {
+
+    @Param({"1000", "10000"})
+    private int labels;
+
+    private ParagraphVectors vectors;
+    private SerializedParagraphVectors serializedVectors;
+
+    @Setup
+    public void setup() throws IOException {
+        vectors = SyntheticParagraphVectors.create(labels, 42);
+        serializedVectors = new SerializedParagraphVectors(vectors, "brand");
+    }
+
+    @Benchmark
+    public SerializedParagraphVectors serialize() throws IOException {
+        return new SerializedParagraphVectors(vectors, "brand");
+    }
+
+    @Benchmark
+    public ParagraphVectors deserialize() throws IOException {
+        return serializedVectors.getNeuralNetwork();
+    }
+
+    @Benchmark
+    public ParagraphVectors roundTrip() throws IOException {
+        return new SerializedParagraphVectors(vectors, "brand").getNeuralNetwork();
+    }
+}
@@ -0,0 +1,88 @@
+package de.hpi.machinelearning;
+
+import de.hpi.modelgenerator.persistence.ParsedOffer;
+import de.hpi.modelgenerator.persistence.ShopOffer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates random offers, so that benchmarks can run without the cache and MongoDB.
+ */
+public class SyntheticOffers {
+
+    private static final String[] BRANDS = {"Apple", "Samsung", "Sony", "Bosch", "Siemens", "Philips", "Canon", "Nikon"};
+    private static final String[] WORDS = {"smartphone", "black", "white", "64gb", "128gb", "camera", "lens", "washing",
+            "machine", "tv", "led", "4k", "hdr", "wireless", "headphones", "bluetooth", "kitchen", "coffee", "maker",
+            "steel", "pro", "mini", "max", "edition", "set", "bundle", "case", "charger", "display", "inch"};
+
+    private final Random random;
+
+    public SyntheticOffers(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * This method returns all words that are used in the generated texts.
+     * @return Brands and words
+     */
+    public static List<String> getVocabulary() {
+        List<String> vocabulary = new ArrayList<>(Arrays.asList(BRANDS));
+        vocabulary.addAll(Arrays.asList(WORDS));
+        return vocabulary;
+    }
+
+    public String brand() {
+        return BRANDS[random.nextInt(BRANDS.length)];
+    }
+
+    public String text(int words) {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < words; i++) {
+            if(i > 0) builder.append(' ');
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    public String title() {
+        return brand() + " " + text(4 + random.nextInt(6));
+    }
+
+    public String description() {
+        return text(60 + random.nextInt(120));
+    }
+
+    public ShopOffer shopOffer() {
+        ShopOffer offer = new ShopOffer();
+        offer.setOfferKey(Long.toHexString(random.nextLong()));
+        offer.setShopId((long) random.nextInt(100));
+        offer.setBrandName(brand());
+        offer.setTitles(Collections.singletonMap("0", title()));
+        offer.setDescriptions(Collections.singletonMap("0", description()));
+        offer.setPrices(Collections.singletonMap("0", 10 + random.nextInt(100000) / 100d));
+        offer.setUrls(Collections.singletonMap("0", "https://shop.example/" + offer.getOfferKey()));
+        offer.setMappedCatalogCategory(Integer.toString(random.nextInt(50)));
+        offer.setImageId(Long.toHexString(random.nextLong()));
+        offer.setHan(Long.toHexString(random.nextLong()));
+        offer.setSku(Long.toHexString(random.nextLong()));
+        return offer;
+    }
+
+    public ParsedOffer parsedOffer(ShopOffer matchingOffer) {
+        ParsedOffer offer = new ParsedOffer();
+        offer.setTitle(matchingOffer.getTitles().get("0") + " " + text(1));
+        offer.setDescription(description());
+        offer.setPrice(Double.toString(matchingOffer.getPrices().get("0") * (0.9 + random.nextDouble() / 5)));
+        offer.setUrl(matchingOffer.getUrls().get("0"));
+        offer.setBrandName(random.nextBoolean() ? matchingOffer.getBrandName() : null);
+        offer.setCategory(matchingOffer.getMappedCatalogCategory());
+        offer.setImageUrl("https://images.example/" + matchingOffer.getImageId() + ".jpg");
+        offer.setHan(random.nextBoolean() ? matchingOffer.getHan() : null);
+        offer.setSku(matchingOffer.getSku());
+        return offer;
+    }
+}
@@ -0,0 +1,63 @@
+package de.hpi.machinelearning;
+
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.deeplearning4j.text.documentiterator.LabelsSource;
+import org.deeplearning4j.text.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates paragraph vectors with random weights for the synthetic vocabulary and a given amount of labels, so that
+ * benchmarks do not have to train a network.
+ */
+public class SyntheticParagraphVectors {
+
+    public static final int LAYER_SIZE = 100;
+
+    private SyntheticParagraphVectors() {
+    }
+
+    public static String label(int index) {
+        return "brand" + index;
+    }
+
+    public static ParagraphVectors create(int labelCount, long seed) {
+        AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        for(String word : SyntheticOffers.getVocabulary()) {
+            addToken(vocab, word, false);
+        }
+
+        List<String> labels = new ArrayList<>(labelCount);
+        for(int i = 0; i < labelCount; i++) {
+            labels.add(label(i));
+            addToken(vocab, label(i), true);
+        }
+
+        InMemoryLookupTable<VocabWord> lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(LAYER_SIZE)
+                .cache(vocab)
+                .seed(seed)
+                .build();
+        lookupTable.resetWeights(true);
+
+        return new ParagraphVectors.Builder()
+                .layerSize(LAYER_SIZE)
+                .vocabCache(vocab)
+                .lookupTable(lookupTable)
+                .labelsSource(new LabelsSource(labels))
+                .tokenizerFactory(new DefaultTokenizerFactory())
+                .build();
+    }
+
+    private static void addToken(AbstractCache<VocabWord> vocab, String word, boolean isLabel) {
+        VocabWord token = new VocabWord(1.0, word);
+        token.setIndex(vocab.numWords());
+        token.markAsLabel(isLabel);
+        vocab.addToken(token);
+        vocab.addWordToIndex(token.getIndex(), word);
+    }
+}
@@ -0,0 +1,133 @@
+package de.hpi.machinelearning;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the trigram similarity kernel with the former implementation based on substrings and hash sets.
+ * Titles are short texts, descriptions are long texts.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TextSimilarityBenchmark {
+
+    private static final int PAIRS = 1000;
+
+    @Param({"title", "description"})
+    private String text;
+
+    private String[] left;
+    private String[] right;
+
+    @Setup
+    public void setup() {
+        SyntheticOffers offers = new SyntheticOffers(42);
+        left = new String[PAIRS];
+        right = new String[PAIRS];
+        for(int i = 0; i < PAIRS; i++) {
+            boolean title = "title".equals(text);
+            left[i] = title ? offers.title() : offers.description();
+            right[i] = title ? offers.title() : offers.description();
+        }
+    }
+
+    @Benchmark
+    public void combinedKernel(Blackhole blackhole) {
+        NGramSimilarity similarity = NGramSimilarity.forCurrentThread();
+        for(int i = 0; i < PAIRS; i++) {
+            similarity.compare(left[i], right[i]);
+            blackhole.consume(similarity.getJaccard());
+            blackhole.consume(similarity.getCosine());
+        }
+    }
+
+    @Benchmark
+    public void separateCalls(Blackhole blackhole) {
+        for(int i = 0; i < PAIRS; i++) {
+            blackhole.consume(TextSimilarityCalculator.jaccardSimilarity(left[i], right[i]));
+            blackhole.consume(TextSimilarityCalculator.cosineSimilarity(left[i], right[i]));
+        }
+    }
+
+    @Benchmark
+    public void formerImplementation(Blackhole blackhole) {
+        for(int i = 0; i < PAIRS; i++) {
+            blackhole.consume(FormerTextSimilarity.jaccardSimilarity(left[i], right[i]));
+            blackhole.consume(FormerTextSimilarity.cosineSimilarity(left[i], right[i]));
+        }
+    }
+
+    /**
+     * Former implementation of the text similarities, kept as baseline.
+     */
+    private static class FormerTextSimilarity {
+
+        private static double jaccardSimilarity(String left, String right) {
+            if(isEmpty(left) || isEmpty(right)) {
+                return -1d;
+            }
+
+            Set<String> leftWords = new HashSet<>(getNGramm(left));
+            Set<String> rightWords = new HashSet<>(getNGramm(right));
+            Set<String> intersection = new HashSet<>(leftWords);
+            intersection.retainAll(rightWords);
+            Set<String> union = new HashSet<>(leftWords);
+            union.addAll(rightWords);
+            return (double) intersection.size() / (double) union.size();
+        }
+
+        private static double cosineSimilarity(String left, String right) {
+            if(isEmpty(left) || isEmpty(right)) {
+                return -1d;
+            }
+
+            Map<String, Integer> leftVector = getOccurrences(getNGramm(left));
+            Map<String, Integer> rightVector = getOccurrences(getNGramm(right));
+            Set<String> intersection = new HashSet<>(leftVector.keySet());
+            intersection.retainAll(rightVector.keySet());
+            long dotProduct = 0;
+            for(String key : intersection) {
+                dotProduct += leftVector.get(key) * rightVector.get(key);
+            }
+
+            double d1 = 0.0d;
+            for(Integer value : leftVector.values()) {
+                d1 += Math.pow(value, 2);
+            }
+            double d2 = 0.0d;
+            for(Integer value : rightVector.values()) {
+                d2 += Math.pow(value, 2);
+            }
+            return (d1 <= 0.0 || d2 <= 0.0) ? 0.0 : dotProduct / (Math.sqrt(d1) * Math.sqrt(d2));
+        }
+
+        private static Map<String, Integer> getOccurrences(List<String> words) {
+            Map<String, Integer> occurrences = new HashMap<>();
+            for(String word : words) {
+                occurrences.merge(word, 1, Integer::sum);
+            }
+            return occurrences;
+        }
+
+        private static List<String> getNGramm(String input) {
+            String padding = String.format("%1$" + 2 + "s", "");
+            String normalisedInput = padding + input.toLowerCase() + padding;
+            List<String> result = new ArrayList<>();
+            for(int i = 0; i < normalisedInput.length() - 2; i++) {
+                result.add(normalisedInput.substring(i, i + 3));
+            }
+            return result;
+        }
+
+        private static boolean isEmpty(String string) {
+            return string == null || string.replaceAll("\\w", "").isEmpty();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.hpi.machinelearning;
+
+/**
+ * Way of estimating the quality of a matching model.
+ */
+public enum EvaluationMode {
+    /**
+     * Train on the training set and evaluate on the testing set.
+     */
+    HOLDOUT,
+    /**
+     * k-fold cross-validation on the training set.
+     */
+    CROSS_VALIDATION
+}
@@ -0,0 +1,276 @@
+package de.hpi.machinelearning;
+
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.*;
+
+/**
+ * Approximate nearest neighbour index over label vectors (hierarchical navigable small world graph).
+ * Vectors are L2-normalised, so the inner product equals the cosine similarity.
+ * The index is built once and can be queried concurrently afterwards. A higher efSearch increases the recall and
+ * the latency of queries.
+ */
+public class HnswIndex {
+
+    private static final Comparator<Candidate> BY_DESCENDING_SIMILARITY =
+            Comparator.comparingDouble((Candidate candidate) -> candidate.similarity).reversed();
+
+    private final ThreadLocal<VisitedNodes> visited = ThreadLocal.withInitial(VisitedNodes::new);
+    private final List<String> labels;
+    private final float[][] vectors;
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private final int[][][] neighbours;
+    private final int[][] neighbourCounts;
+    private volatile int efSearch;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * This method builds an index over the given label vectors.
+     * @param labels Labels in the order of the vectors
+     * @param vectors Label vectors
+     * @param m Maximum amount of neighbours per node on the upper levels (twice as many on the lowest level)
+     * @param efConstruction Amount of candidates that are considered while inserting a node
+     * @param efSearch Amount of candidates that are considered while querying
+     * @param seed Seed for choosing the levels of the nodes
+     */
+    public HnswIndex(List<String> labels, float[][] vectors, int m, int efConstruction, int efSearch, long seed) {
+        if(labels.size() != vectors.length) throw new IllegalArgumentException("Every label needs exactly one vector");
+        this.labels = new ArrayList<>(labels);
+        this.vectors = new float[vectors.length][];
+        this.m = Math.max(2, m);
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.random = new Random(seed);
+        this.neighbours = new int[vectors.length][][];
+        this.neighbourCounts = new int[vectors.length][];
+
+        for(int node = 0; node < vectors.length; node++) {
+            this.vectors[node] = normalise(vectors[node]);
+            insert(node);
+        }
+    }
+
+    /**
+     * This method returns the labels that are most similar to the query vector.
+     * @param query Query vector
+     * @param k Maximum amount of labels
+     * @return Labels with their cosine similarity ordered by descending similarity
+     */
+    public List<Pair<String, Double>> search(float[] query, int k) {
+        List<Pair<String, Double>> result = new ArrayList<>();
+        if(entryPoint < 0 || k <= 0) {
+            return result;
+        }
+
+        float[] normalisedQuery = normalise(query);
+        int current = entryPoint;
+        for(int level = maxLevel; level > 0; level--) {
+            current = searchLayer(normalisedQuery, current, 1, level).peek().node;
+        }
+
+        PriorityQueue<Candidate> candidates = searchLayer(normalisedQuery, current, Math.max(efSearch, k), 0);
+        while(candidates.size() > k) {
+            candidates.poll();
+        }
+        while(!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            result.add(new Pair<>(labels.get(candidate.node), candidate.similarity));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    public int size() {
+        return vectors.length;
+    }
+
+    private void insert(int node) {
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        neighbours[node] = new int[level + 1][];
+        neighbourCounts[node] = new int[level + 1];
+        for(int l = 0; l <= level; l++) {
+            neighbours[node][l] = new int[getMaxNeighbours(l) + 1];
+        }
+
+        if(entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int current = entryPoint;
+        for(int l = maxLevel; l > level; l--) {
+            current = searchLayer(vectors[node], current, 1, l).peek().node;
+        }
+
+        for(int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> nearest = new ArrayList<>(searchLayer(vectors[node], current, efConstruction, l));
+            nearest.sort(BY_DESCENDING_SIMILARITY);
+            current = nearest.get(0).node;
+
+            for(Candidate neighbour : selectNeighbours(nearest, m)) {
+                neighbours[node][l][neighbourCounts[node][l]++] = neighbour.node;
+                connect(neighbour.node, node, l);
+            }
+        }
+
+        if(level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    private void connect(int node, int neighbour, int level) {
+        int[] nodeNeighbours = neighbours[node][level];
+        nodeNeighbours[neighbourCounts[node][level]++] = neighbour;
+        if(neighbourCounts[node][level] <= getMaxNeighbours(level)) {
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(neighbourCounts[node][level]);
+        for(int i = 0; i < neighbourCounts[node][level]; i++) {
+            candidates.add(new Candidate(nodeNeighbours[i], similarity(vectors[node], vectors[nodeNeighbours[i]])));
+        }
+        candidates.sort(BY_DESCENDING_SIMILARITY);
+
+        List<Candidate> selected = selectNeighbours(candidates, getMaxNeighbours(level));
+        for(int i = 0; i < selected.size(); i++) {
+            nodeNeighbours[i] = selected.get(i).node;
+        }
+        neighbourCounts[node][level] = selected.size();
+    }
+
+    /**
+     * This method selects diverse neighbours: a candidate is skipped if it is more similar to an already selected
+     * neighbour than to the node itself. Skipped candidates fill up the remaining connections.
+     * @param candidates Candidates ordered by descending similarity to the node
+     * @param amount Maximum amount of neighbours
+     * @return Selected neighbours
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int amount) {
+        List<Candidate> selected = new ArrayList<>(amount);
+        List<Candidate> skipped = new ArrayList<>();
+        for(Candidate candidate : candidates) {
+            if(selected.size() >= amount) break;
+
+            boolean diverse = true;
+            for(Candidate neighbour : selected) {
+                if(similarity(vectors[candidate.node], vectors[neighbour.node]) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : skipped).add(candidate);
+        }
+
+        for(int i = 0; i < skipped.size() && selected.size() < amount; i++) {
+            selected.add(skipped.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * This method searches the nearest nodes on one level of the graph.
+     * @return Nearest nodes, the least similar node is the head of the queue
+     */
+    private PriorityQueue<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        VisitedNodes visited = this.visited.get();
+        visited.clear(vectors.length);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(BY_DESCENDING_SIMILARITY);
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(BY_DESCENDING_SIMILARITY.reversed());
+
+        Candidate start = new Candidate(entry, similarity(query, vectors[entry]));
+        visited.add(entry);
+        candidates.add(start);
+        nearest.add(start);
+
+        while(!candidates.isEmpty()) {
+            Candidate candidate = candidates.poll();
+            if(nearest.size() >= ef && candidate.similarity < nearest.peek().similarity) {
+                break;
+            }
+
+            for(int i = 0; i < neighbourCounts[candidate.node][level]; i++) {
+                int neighbour = neighbours[candidate.node][level][i];
+                if(!visited.add(neighbour)) continue;
+
+                double similarity = similarity(query, vectors[neighbour]);
+                if(nearest.size() < ef || similarity > nearest.peek().similarity) {
+                    Candidate next = new Candidate(neighbour, similarity);
+                    candidates.add(next);
+                    nearest.add(next);
+                    if(nearest.size() > ef) {
+                        nearest.poll();
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int getMaxNeighbours(int level) {
+        return (level == 0) ? 2 * m : m;
+    }
+
+    private static double similarity(float[] a, float[] b) {
+        double dotProduct = 0;
+        for(int i = 0; i < a.length; i++) {
+            dotProduct += a[i] * b[i];
+        }
+        return dotProduct;
+    }
+
+    private static float[] normalise(float[] vector) {
+        double norm = Math.sqrt(similarity(vector, vector));
+        float[] normalised = new float[vector.length];
+        for(int i = 0; i < vector.length; i++) {
+            normalised[i] = (norm > 0) ? (float) (vector[i] / norm) : 0;
+        }
+        return normalised;
+    }
+
+    private static class Candidate {
+
+        private final int node;
+        private final double similarity;
+
+        private Candidate(int node, double similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+
+    /**
+     * Marks visited nodes of one search, reused by the searches of a thread.
+     */
+    private static class VisitedNodes {
+
+        private int[] marks = new int[0];
+        private int mark;
+
+        private void clear(int size) {
+            if(marks.length < size || mark == Integer.MAX_VALUE) {
+                marks = new int[size];
+                mark = 0;
+            }
+            mark++;
+        }
+
+        private boolean add(int node) {
+            if(marks[node] == mark) {
+                return false;
+            }
+            marks[node] = mark;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package de.hpi.machinelearning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.RandomAccess;
+
+public class IndexSampler {
+
+    /**
+     * This method returns the indices 0 to size - 1 in random order (Fisher-Yates shuffle).
+     * The same random generator state always results in the same order.
+     * @param size Amount of indices
+     * @param random Random generator that is used for shuffling
+     * @return Shuffled indices
+     */
+    public static int[] shuffledIndices(int size, Random random) {
+        int[] indices = new int[size];
+        for(int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        for(int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = indices[i];
+            indices[i] = indices[j];
+            indices[j] = swap;
+        }
+        return indices;
+    }
+
+    /**
+     * This method returns the elements at the given range of indices.
+     * @param elements List with random access (e.g. ArrayList)
+     * @param indices Indices of elements
+     * @param from First index position (inclusive)
+     * @param to Last index position (exclusive)
+     * @return Selected elements
+     */
+    public static <T> List<T> select(List<T> elements, int[] indices, int from, int to) {
+        if(!(elements instanceof RandomAccess)) {
+            elements = new ArrayList<>(elements);
+        }
+
+        List<T> selection = new ArrayList<>(Math.max(0, to - from));
+        for(int i = from; i < to; i++) {
+            selection.add(elements.get(indices[i]));
+        }
+        return selection;
+    }
+
+    /**
+     * This method returns a random value in [min, max) that differs from the excluded value. All other values of the
+     * range are equally likely. If the range contains no other value, the excluded value is returned.
+     * @param excludedValue Value that should not be returned
+     * @param min Lower bound (inclusive)
+     * @param max Upper bound (exclusive)
+     * @param random Random generator
+     * @return Random value
+     */
+    public static int differentRandom(int excludedValue, int min, int max, Random random) {
+        boolean excludedInRange = excludedValue >= min && excludedValue < max;
+        if(!excludedInRange) return min + random.nextInt(max - min);
+        if(max - min <= 1) return excludedValue;
+
+        int value = min + random.nextInt(max - min - 1);
+        return (value >= excludedValue) ? value + 1 : value;
+    }
+}
@@ -1,33 +1,149 @@
 package de.hpi.machinelearning;
 
+import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.primitives.Pair;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.ops.transforms.Transforms;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Scores documents against all labels of a paragraph vectors model.
+ * The L2-normalised label vectors are stacked into one matrix when the seeker is created, so the cosine similarities
+ * of a document to all labels are computed with one matrix-vector product.
+ */
 public class LabelSeeker {
     private List<String> labelsUsed;
-    private InMemoryLookupTable<VocabWord> lookupTable;
+    private INDArray labelMatrix;
 
     public LabelSeeker(List<String> labelsUsed, InMemoryLookupTable<VocabWord> lookupTable) {
         if (labelsUsed.isEmpty()) throw new IllegalStateException("You can't have 0 labels used for ParagraphVectors");
-        this.lookupTable = lookupTable;
-        this.labelsUsed = labelsUsed;
+        this.labelsUsed = new ArrayList<>(labelsUsed);
+        this.labelMatrix = Nd4j.create(labelsUsed.size(), lookupTable.layerSize());
+
+        for (int i = 0; i < labelsUsed.size(); i++) {
+            INDArray vecLabel = lookupTable.vector(labelsUsed.get(i));
+            if (vecLabel == null) throw new IllegalStateException("Label '" + labelsUsed.get(i) + "' has no known vector!");
+
+            double norm = vecLabel.norm2Number().doubleValue();
+            labelMatrix.putRow(i, (norm > 0) ? vecLabel.div(norm) : vecLabel);
+        }
     }
 
+    /**
+     * This method returns the cosine similarity of the document to every label.
+     * @param vector Document vector
+     * @return Pairs of label and score in the order of the labels
+     */
     public List<Pair<String, Double>> getScores(INDArray vector) {
-        List<Pair<String, Double>> result = new ArrayList<>();
-        for (String label: labelsUsed) {
-            INDArray vecLabel = lookupTable.vector(label);
-            if (vecLabel == null) throw new IllegalStateException("Label '" + label + "' has no known vector!");
+        double[] scores = getScoreArray(vector);
+        List<Pair<String, Double>> result = new ArrayList<>(scores.length);
+        for (int i = 0; i < scores.length; i++) {
+            result.add(new Pair<>(labelsUsed.get(i), scores[i]));
+        }
+        return result;
+    }
+
+    /**
+     * This method returns the label that is most similar to the document.
+     * @param vector Document vector
+     * @return Best label and its score or null, if no label has a positive score
+     */
+    public Pair<String, Double> getBestLabel(INDArray vector) {
+        double[] scores = getScoreArray(vector);
+        int best = -1;
+        for (int i = 0; i < scores.length; i++) {
+            if (scores[i] > 0 && (best < 0 || scores[i] > scores[best])) {
+                best = i;
+            }
+        }
+        return (best < 0) ? null : new Pair<>(labelsUsed.get(best), scores[best]);
+    }
+
+    /**
+     * This method returns the labels that are most similar to the document.
+     * @param vector Document vector
+     * @param k Maximum amount of labels
+     * @return Labels with their scores ordered by descending score
+     */
+    public List<Pair<String, Double>> getTopLabels(INDArray vector, int k) {
+        return getTopLabels(getScoreArray(vector), k);
+    }
+
+    /**
+     * This method returns the best label of multiple documents. All documents are scored with one matrix product.
+     * @param vectors Document vectors, one per row
+     * @return Best label and its score per document or null, if no label has a positive score
+     */
+    public List<Pair<String, Double>> getBestLabels(INDArray vectors) {
+        INDArray scores = vectors.mmul(labelMatrix.transpose());
+        INDArray norms = vectors.norm2(1);
+        INDArray maxScores = scores.max(1);
+        INDArray bestLabels = Nd4j.argMax(scores, 1);
+
+        List<Pair<String, Double>> result = new ArrayList<>(vectors.rows());
+        for (int i = 0; i < vectors.rows(); i++) {
+            double norm = norms.getDouble(i);
+            double score = maxScores.getDouble(i) / ((norm > 0) ? norm : 1);
+            result.add((score > 0) ? new Pair<>(labelsUsed.get(bestLabels.getInt(i)), score) : null);
+        }
+        return result;
+    }
+
+    public List<String> getLabels() {
+        return labelsUsed;
+    }
 
-            double sim = Transforms.cosineSim(vector, vecLabel);
-            result.add(new Pair<>(label, sim));
+    /**
+     * This method returns a copy of the L2-normalised label vectors.
+     * @return One vector per label in the order of the labels
+     */
+    public float[][] getLabelVectors() {
+        float[][] vectors = new float[labelsUsed.size()][];
+        for (int i = 0; i < vectors.length; i++) {
+            vectors[i] = labelMatrix.getRow(i).dup().data().asFloat();
+        }
+        return vectors;
+    }
+
+    public int getLayerSize() {
+        return labelMatrix.columns();
+    }
+
+    private List<Pair<String, Double>> getTopLabels(double[] scores, int k) {
+        int[] top = new int[Math.max(0, Math.min(k, scores.length))];
+        if (top.length == 0) return new ArrayList<>();
+
+        int size = 0;
+        for (int i = 0; i < scores.length; i++) {
+            if (size == top.length && scores[i] <= scores[top[size - 1]]) continue;
+
+            int position = (size < top.length) ? size++ : size - 1;
+            while (position > 0 && scores[top[position - 1]] < scores[i]) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = i;
+        }
+
+        List<Pair<String, Double>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new Pair<>(labelsUsed.get(top[i]), scores[top[i]]));
         }
         return result;
     }
+
+    private double[] getScoreArray(INDArray vector) {
+        INDArray column = vector.isColumnVector() ? vector : vector.transpose();
+        double norm = vector.norm2Number().doubleValue();
+        double[] scores = labelMatrix.mmul(column).data().asDouble();
+        if (norm > 0) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] /= norm;
+            }
+        }
+        return scores;
+    }
 }
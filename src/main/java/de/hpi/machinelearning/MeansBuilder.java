@@ -8,37 +8,213 @@ import org.deeplearning4j.text.tokenization.tokenizerfactory.TokenizerFactory;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
-import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Builds the centroid (mean of the word vectors) of documents.
+ * Centroids are optionally cached by their whitespace normalised content, the least recently used centroids are
+ * evicted first.
+ */
 public class MeansBuilder {
+    private static final String TOKEN_DELIMITERS = " \t\n\r\f";
+
     private VocabCache<VocabWord> vocabCache;
     private InMemoryLookupTable<VocabWord> lookupTable;
     private TokenizerFactory tokenizerFactory;
+    private final int layerSize;
+    private final int cacheSize;
+    private final Map<String, float[]> centroidCache;
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final ThreadLocal<INDArray> sumBuffer;
 
     public MeansBuilder(InMemoryLookupTable<VocabWord> lookupTable, TokenizerFactory tokenizerFactory) {
+        this(lookupTable, tokenizerFactory, 0);
+    }
+
+    public MeansBuilder(InMemoryLookupTable<VocabWord> lookupTable, TokenizerFactory tokenizerFactory, int cacheSize) {
         this.lookupTable = lookupTable;
         this.vocabCache = lookupTable.getVocab();
         this.tokenizerFactory = tokenizerFactory;
+        this.layerSize = Math.max(lookupTable.layerSize(), 1);
+        this.cacheSize = cacheSize;
+        this.centroidCache = new LinkedHashMap<String, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, float[]> eldest) {
+                return size() > MeansBuilder.this.cacheSize;
+            }
+        };
+        this.sumBuffer = ThreadLocal.withInitial(() -> Nd4j.create(1, this.layerSize));
     }
 
     public INDArray documentAsVector(LabelledDocument document) {
-        List<String> documentAsTokens = tokenizerFactory.create(document.getContent()).getTokens();
-        AtomicInteger cnt = new AtomicInteger(0);
-        for (String word: documentAsTokens) {
-            if (vocabCache.containsWord(word)) cnt.incrementAndGet();
+        String content = normalise(document.getContent());
+        float[] centroid = getCachedCentroid(content);
+        if (centroid == null) {
+            centroid = computeCentroid(content);
+            putCachedCentroid(content, centroid);
+        }
+
+        return Nd4j.create(centroid, new int[]{1, layerSize});
+    }
+
+    /**
+     * This method builds the centroids of multiple documents. The vectors of all known tokens of documents that are
+     * not cached are pulled from the lookup table with one operation and averaged per document.
+     * @param contents Contents of the documents, null contents result in a zero vector
+     * @return Matrix with one centroid per row
+     */
+    public INDArray documentsAsMatrix(List<String> contents) {
+        float[] centroids = new float[contents.size() * layerSize];
+        Map<String, List<Integer>> missingRows = new LinkedHashMap<>();
+        for (int i = 0; i < contents.size(); i++) {
+            String content = normalise(contents.get(i));
+            float[] centroid = getCachedCentroid(content);
+            if (centroid != null) {
+                System.arraycopy(centroid, 0, centroids, i * layerSize, layerSize);
+            } else {
+                missingRows.computeIfAbsent(content, key -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<String> missingContents = new ArrayList<>(missingRows.keySet());
+        int[][] documentIndices = new int[missingContents.size()][];
+        List<Integer> allIndices = new ArrayList<>();
+        for (int i = 0; i < missingContents.size(); i++) {
+            documentIndices[i] = getTokenIndices(missingContents.get(i));
+            for (int index : documentIndices[i]) allIndices.add(index);
+        }
+
+        float[] values = allIndices.isEmpty() ? new float[0] : Nd4j.pullRows(lookupTable.getSyn0(), 1,
+                allIndices.stream().mapToInt(Integer::intValue).toArray(), 'c').data().asFloat();
+        int row = 0;
+        for (int i = 0; i < missingContents.size(); i++) {
+            float[] centroid = new float[layerSize];
+            for (int token = 0; token < documentIndices[i].length; token++, row++) {
+                for (int k = 0; k < layerSize; k++) {
+                    centroid[k] += values[row * layerSize + k];
+                }
+            }
+            divide(centroid, documentIndices[i].length);
+            putCachedCentroid(missingContents.get(i), centroid);
+
+            for (int target : missingRows.get(missingContents.get(i))) {
+                System.arraycopy(centroid, 0, centroids, target * layerSize, layerSize);
+            }
+        }
+
+        return Nd4j.create(centroids, new int[]{contents.size(), layerSize});
+    }
+
+    public String getCacheStatistics() {
+        int size;
+        synchronized (centroidCache) {
+            size = centroidCache.size();
+        }
+        return String.format("%d hits, %d misses (hit rate %.3f), %d cached centroids",
+                cacheHits.get(), cacheMisses.get(), getCacheHitRate(), size);
+    }
+
+    public double getCacheHitRate() {
+        long hitCount = cacheHits.get();
+        long missCount = cacheMisses.get();
+        return (hitCount + missCount == 0) ? 0 : (double) hitCount / (hitCount + missCount);
+    }
+
+    /**
+     * This method sums the vectors of all known tokens into a reusable buffer and divides by their amount.
+     */
+    private float[] computeCentroid(String content) {
+        INDArray sum = sumBuffer.get();
+        sum.assign(0);
+        int count = 0;
+        for (String word : getTokens(content)) {
+            if (vocabCache.containsWord(word)) {
+                sum.addi(lookupTable.vector(word));
+                count++;
+            }
+        }
+
+        float[] centroid = sum.data().asFloat();
+        divide(centroid, count);
+        return centroid;
+    }
+
+    private int[] getTokenIndices(String content) {
+        List<String> tokens = getTokens(content);
+        int[] indices = new int[tokens.size()];
+        int count = 0;
+        for (String word : tokens) {
+            if (vocabCache.containsWord(word)) indices[count++] = vocabCache.indexOf(word);
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    private List<String> getTokens(String content) {
+        return content.isEmpty() ? Collections.emptyList() : tokenizerFactory.create(content).getTokens();
+    }
+
+    private float[] getCachedCentroid(String content) {
+        if (cacheSize <= 0) return null;
+
+        float[] centroid;
+        synchronized (centroidCache) {
+            centroid = centroidCache.get(content);
+        }
+        (centroid == null ? cacheMisses : cacheHits).incrementAndGet();
+        return centroid;
+    }
+
+    private void putCachedCentroid(String content, float[] centroid) {
+        if (cacheSize <= 0) return;
+
+        synchronized (centroidCache) {
+            centroidCache.put(content, centroid);
         }
-        INDArray allWords = Nd4j.create(Math.max(cnt.get(), 1), Math.max(lookupTable.layerSize(), 1));
+    }
 
-        cnt.set(0);
-        for (String word: documentAsTokens) {
-            if (vocabCache.containsWord(word))
-                allWords.putRow(cnt.getAndIncrement(), lookupTable.vector(word));
+    private static void divide(float[] vector, int divisor) {
+        for (int k = 0; divisor > 0 && k < vector.length; k++) {
+            vector[k] /= divisor;
         }
+    }
+
+    /**
+     * The tokenizer splits at whitespace, so collapsing whitespace does not change the tokens of a document.
+     */
+    private static String normalise(String content) {
+        if (content == null) return "";
+        if (isNormalised(content)) return content;
 
-        INDArray mean = allWords.mean(0);
+        StringBuilder builder = new StringBuilder(content.length());
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            if (!isDelimiter(c)) {
+                builder.append(c);
+            } else if (builder.length() > 0 && builder.charAt(builder.length() - 1) != ' ') {
+                builder.append(' ');
+            }
+        }
+        if (builder.length() > 0 && builder.charAt(builder.length() - 1) == ' ') {
+            builder.setLength(builder.length() - 1);
+        }
+        return builder.toString();
+    }
+
+    private static boolean isNormalised(String content) {
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            boolean isEdge = i == 0 || i == content.length() - 1;
+            if (isDelimiter(c) && (c != ' ' || isEdge || isDelimiter(content.charAt(i - 1)))) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return mean;
+    private static boolean isDelimiter(char c) {
+        return TOKEN_DELIMITERS.indexOf(c) >= 0;
     }
 
 }
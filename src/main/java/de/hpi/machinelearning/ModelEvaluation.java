@@ -0,0 +1,98 @@
+package de.hpi.machinelearning;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.Prediction;
+import weka.classifiers.evaluation.ThresholdCurve;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Quality and inference cost of a matching model, measured on instances that were not used for training.
+ * Precision, recall and AUC refer to the match class.
+ */
+@Getter
+@RequiredArgsConstructor
+public class ModelEvaluation {
+
+    private final double accuracy;
+    private final double precision;
+    private final double recall;
+    private final double areaUnderRoc;
+    private final double nanosPerRow;
+
+    /**
+     * This method computes the metrics of the given predictions. Without predictions, all metrics are 0.
+     * @param predictions Predictions of the model (e.g. of all folds)
+     * @param positiveClassIndex Index of the match class value
+     * @param evaluationNanos Time spent for predicting all rows
+     * @return Evaluation of the predictions
+     */
+    public static ModelEvaluation fromPredictions(List<Prediction> predictions, int positiveClassIndex, long evaluationNanos) {
+        long correct = 0;
+        long truePositives = 0;
+        long falsePositives = 0;
+        long falseNegatives = 0;
+        for(Prediction prediction : predictions) {
+            boolean predicted = !Utils.isMissingValue(prediction.predicted());
+            boolean actualPositive = (int) prediction.actual() == positiveClassIndex;
+            boolean predictedPositive = predicted && (int) prediction.predicted() == positiveClassIndex;
+            if(predicted && prediction.actual() == prediction.predicted()) correct++;
+            if(actualPositive && predictedPositive) truePositives++;
+            if(!actualPositive && predictedPositive) falsePositives++;
+            if(actualPositive && !predictedPositive) falseNegatives++;
+        }
+
+        // the curve is null without predictions
+        Instances curve = new ThresholdCurve().getCurve(new ArrayList<>(predictions), positiveClassIndex);
+        double areaUnderRoc = (curve == null) ? 0 : ThresholdCurve.getROCArea(curve);
+        return new ModelEvaluation(
+                ratio(correct, predictions.size()),
+                ratio(truePositives, truePositives + falsePositives),
+                ratio(truePositives, truePositives + falseNegatives),
+                Double.isNaN(areaUnderRoc) ? 0 : areaUnderRoc,
+                predictions.isEmpty() ? 0 : (double) evaluationNanos / predictions.size());
+    }
+
+    public double getErrorRate() {
+        return 1 - getAccuracy();
+    }
+
+    public double getFMeasure() {
+        return (getPrecision() + getRecall() == 0) ? 0 : 2 * getPrecision() * getRecall() / (getPrecision() + getRecall());
+    }
+
+    /**
+     * This method returns the value of the evaluation regarding the given objective. Higher values are better.
+     * @param objective Objective for choosing a model
+     * @return Value of the objective
+     */
+    public double getValue(ModelObjective objective) {
+        switch(objective) {
+            case PRECISION:
+                return getPrecision();
+            case RECALL:
+                return getRecall();
+            case F_MEASURE:
+                return getFMeasure();
+            case AUC:
+                return getAreaUnderRoc();
+            default:
+                return getAccuracy();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("accuracy %.4f, precision %.4f, recall %.4f, AUC %.4f, %.1f us per row",
+                getAccuracy(), getPrecision(), getRecall(), getAreaUnderRoc(), getNanosPerRow() / 1000);
+    }
+
+    private static double ratio(long numerator, long denominator) {
+        return (denominator == 0) ? 0 : (double) numerator / denominator;
+    }
+}
@@ -0,0 +1,12 @@
+package de.hpi.machinelearning;
+
+/**
+ * Metric that is maximised when choosing the best matching model.
+ */
+public enum ModelObjective {
+    ACCURACY,
+    PRECISION,
+    RECALL,
+    F_MEASURE,
+    AUC
+}
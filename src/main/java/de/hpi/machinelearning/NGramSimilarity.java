@@ -0,0 +1,178 @@
+package de.hpi.machinelearning;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Computes Jaccard and cosine similarity of the character trigrams of two strings in one pass.
+ * Trigrams are packed into a long (three 16 bit chars) and counted in a reusable open addressing table, so comparing
+ * two strings does not allocate. Instances are not thread-safe, use {@link #forCurrentThread()}.
+ */
+public class NGramSimilarity {
+
+    private static final int TOKEN_LENGTH = 3;
+    private static final char PADDING = ' ';
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final boolean LOCALE_SENSITIVE_LOWER_CASE = isLocaleSensitiveLowerCase(Locale.getDefault());
+    private static final ThreadLocal<NGramSimilarity> INSTANCE = ThreadLocal.withInitial(NGramSimilarity::new);
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] leftCounts = new int[INITIAL_CAPACITY];
+    private int[] rightCounts = new int[INITIAL_CAPACITY];
+    private int[] stamps = new int[INITIAL_CAPACITY];
+    private int[] usedSlots = new int[INITIAL_CAPACITY];
+    private int usedSlotCount;
+    private int stamp;
+
+    private double jaccard;
+    private double cosine;
+
+    public static NGramSimilarity forCurrentThread() {
+        return INSTANCE.get();
+    }
+
+    /**
+     * This method compares the lower cased trigrams of both strings (padded with two spaces).
+     * The results are available with {@link #getJaccard()} and {@link #getCosine()}. Both are -1 if one of the strings
+     * is considered empty.
+     * @param left First string
+     * @param right Second string
+     */
+    public void compare(String left, String right) {
+        if(isEmpty(left) || isEmpty(right)) {
+            jaccard = -1d;
+            cosine = -1d;
+            return;
+        }
+
+        String normalisedLeft = needsStringLowerCase(left) ? left.toLowerCase() : left;
+        String normalisedRight = needsStringLowerCase(right) ? right.toLowerCase() : right;
+        prepare(normalisedLeft.length() + normalisedRight.length() + 2 * (TOKEN_LENGTH - 1));
+        addTrigrams(normalisedLeft, normalisedLeft == left, true);
+        addTrigrams(normalisedRight, normalisedRight == right, false);
+
+        long intersection = 0;
+        long dotProduct = 0;
+        double d1 = 0.0d;
+        double d2 = 0.0d;
+        for(int i = 0; i < usedSlotCount; i++) {
+            int leftCount = leftCounts[usedSlots[i]];
+            int rightCount = rightCounts[usedSlots[i]];
+            if(leftCount > 0 && rightCount > 0) {
+                intersection++;
+                dotProduct += (long) leftCount * rightCount;
+            }
+            d1 += (double) leftCount * leftCount;
+            d2 += (double) rightCount * rightCount;
+        }
+
+        jaccard = (double) intersection / (double) usedSlotCount;
+        cosine = (d1 <= 0.0 || d2 <= 0.0) ? 0.0 : dotProduct / (Math.sqrt(d1) * Math.sqrt(d2));
+    }
+
+    public double getJaccard() {
+        return jaccard;
+    }
+
+    public double getCosine() {
+        return cosine;
+    }
+
+    /**
+     * A string is considered empty if it is null or only consists of word characters ([a-zA-Z_0-9]).
+     * @param string String to check
+     * @return Whether the string is considered empty
+     */
+    static boolean isEmpty(String string) {
+        if(string == null) {
+            return true;
+        }
+
+        for(int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            boolean wordCharacter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+            if(!wordCharacter) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void prepare(int trigramCount) {
+        int capacity = Integer.highestOneBit(Math.max(INITIAL_CAPACITY, trigramCount * 2) - 1) << 1;
+        if(keys.length < capacity) {
+            keys = new long[capacity];
+            leftCounts = new int[capacity];
+            rightCounts = new int[capacity];
+            stamps = new int[capacity];
+            stamp = 0;
+        }
+        if(usedSlots.length < trigramCount) {
+            usedSlots = new int[capacity];
+        }
+
+        if(stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            stamp = 0;
+        }
+        stamp++;
+        usedSlotCount = 0;
+    }
+
+    private void addTrigrams(String input, boolean lowerCasePerChar, boolean left) {
+        char first = PADDING;
+        char second = PADDING;
+        for(int i = 0; i < input.length() + TOKEN_LENGTH - 1; i++) {
+            char third = (i >= input.length()) ? PADDING
+                    : lowerCasePerChar ? Character.toLowerCase(input.charAt(i)) : input.charAt(i);
+            count(((long) first << 32) | ((long) second << 16) | third, left);
+            first = second;
+            second = third;
+        }
+    }
+
+    private void count(long key, boolean left) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while(stamps[slot] == stamp && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        if(stamps[slot] != stamp) {
+            stamps[slot] = stamp;
+            keys[slot] = key;
+            leftCounts[slot] = 0;
+            rightCounts[slot] = 0;
+            usedSlots[usedSlotCount++] = slot;
+        }
+
+        if(left) {
+            leftCounts[slot]++;
+        } else {
+            rightCounts[slot]++;
+        }
+    }
+
+    /**
+     * Lower casing char by char equals String.toLowerCase() except for surrogates, a few special characters and some
+     * locales. Those strings are lower cased as a whole.
+     */
+    private static boolean needsStringLowerCase(String input) {
+        if(LOCALE_SENSITIVE_LOWER_CASE) {
+            return true;
+        }
+
+        for(int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if(c == '\u0130' || c == '\u03A3' || Character.isSurrogate(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLocaleSensitiveLowerCase(Locale locale) {
+        String language = locale.getLanguage();
+        return "tr".equals(language) || "az".equals(language) || "lt".equals(language);
+    }
+}
@@ -0,0 +1,15 @@
+package de.hpi.machinelearning;
+
+/**
+ * Algorithm paragraph vectors learn the label vectors with.
+ */
+public enum ParagraphVectorsAlgorithm {
+    /**
+     * Distributed memory: the label vector and the context words predict the next word.
+     */
+    PV_DM,
+    /**
+     * Distributed bag of words: the label vector alone predicts the words of the document.
+     */
+    PV_DBOW
+}
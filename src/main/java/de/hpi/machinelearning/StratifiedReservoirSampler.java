@@ -0,0 +1,181 @@
+package de.hpi.machinelearning;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Draws a uniform random sample of fixed size from multiple streams (strata) in a single pass.
+ * Every stratum gets the same share of the budget. The share of strata with fewer elements is redistributed to the
+ * larger strata. Every stratum only keeps the elements it may still contribute to the sample.
+ * Elements of one stratum have to be added by a single thread, different strata can be filled concurrently.
+ */
+public class StratifiedReservoirSampler<T> {
+
+    private static final int LEVEL_UPDATE_INTERVAL = 1024;
+
+    private final int budget;
+    private final long seed;
+    private final Map<Long, Stratum<T>> strata = new ConcurrentHashMap<>();
+    private volatile long level;
+
+    public StratifiedReservoirSampler(int budget, long seed) {
+        this.budget = budget;
+        this.seed = seed;
+        this.level = budget;
+    }
+
+    public Stratum<T> getStratum(long id) {
+        return strata.computeIfAbsent(id, key -> new Stratum<>(this, key, new Random(seed * 31 + key)));
+    }
+
+    /**
+     * This method returns the sample of all strata. It has to be called after all elements were added.
+     * The sample is ordered by stratum ID, so the same seed and input always result in the same sample.
+     * @return Sample with the size of the budget (or all elements, if there are fewer)
+     */
+    public List<T> getSample() {
+        List<Stratum<T>> orderedStrata = new ArrayList<>(strata.values());
+        orderedStrata.sort(Comparator.comparingLong(Stratum::getId));
+
+        long[] counts = orderedStrata.stream().mapToLong(Stratum::getCount).toArray();
+        long[] quotas = getQuotas(counts, budget);
+
+        List<T> sample = new ArrayList<>((int) Arrays.stream(quotas).sum());
+        for(int i = 0; i < orderedStrata.size(); i++) {
+            sample.addAll(orderedStrata.get(i).getSmallest((int) quotas[i]));
+        }
+        return sample;
+    }
+
+    /**
+     * This method distributes the budget equally across the strata. Strata with fewer elements than their share
+     * contribute all of their elements and the rest of the budget is distributed across the other strata.
+     * @param counts Amount of elements per stratum
+     * @param budget Total sample size
+     * @return Amount of sampled elements per stratum
+     */
+    static long[] getQuotas(long[] counts, int budget) {
+        Integer[] order = getOrderByCount(counts);
+        long[] quotas = new long[counts.length];
+        long remaining = budget;
+        int filled = 0;
+        while(filled < order.length && counts[order[filled]] <= remaining / (order.length - filled)) {
+            quotas[order[filled]] = counts[order[filled]];
+            remaining -= counts[order[filled]];
+            filled++;
+        }
+
+        if(filled < order.length) {
+            long share = remaining / (order.length - filled);
+            long extra = remaining % (order.length - filled);
+            // the largest strata get the remainder of the budget
+            for(int i = order.length - 1; i >= filled; i--) {
+                quotas[order[i]] = share + ((extra-- > 0) ? 1 : 0);
+            }
+        }
+        return quotas;
+    }
+
+    /**
+     * This method returns the share of the budget of those strata that have more elements than their share.
+     * It never increases when more elements are added, so elements beyond it can be dropped early.
+     * @param counts Amount of elements per stratum
+     * @param budget Total sample size
+     * @return Share per large stratum or the budget, if all elements fit into the budget
+     */
+    static long getLevel(long[] counts, int budget) {
+        Integer[] order = getOrderByCount(counts);
+        long remaining = budget;
+        for(int filled = 0; filled < order.length; filled++) {
+            long share = remaining / (order.length - filled);
+            if(counts[order[filled]] > share) {
+                return share;
+            }
+            remaining -= counts[order[filled]];
+        }
+        return budget;
+    }
+
+    private static Integer[] getOrderByCount(long[] counts) {
+        Integer[] order = new Integer[counts.length];
+        for(int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.<Integer>comparingLong(i -> counts[i]).thenComparingInt(i -> i));
+        return order;
+    }
+
+    private long getCapacity() {
+        return Math.min(budget, level + 1);
+    }
+
+    private synchronized void updateLevel() {
+        long[] counts = strata.values().stream().mapToLong(Stratum::getCount).toArray();
+        level = getLevel(counts, budget);
+    }
+
+    public static class Stratum<T> {
+
+        private final StratifiedReservoirSampler<T> sampler;
+        private final long id;
+        private final Random random;
+        private final AtomicLong count = new AtomicLong();
+        private final PriorityQueue<Entry<T>> reservoir = new PriorityQueue<>(
+                Comparator.<Entry<T>>comparingDouble(entry -> entry.key).reversed());
+
+        private Stratum(StratifiedReservoirSampler<T> sampler, long id, Random random) {
+            this.sampler = sampler;
+            this.id = id;
+            this.random = random;
+        }
+
+        public void add(T element) {
+            double key = random.nextDouble();
+            if(count.incrementAndGet() % LEVEL_UPDATE_INTERVAL == 0) {
+                sampler.updateLevel();
+            }
+
+            long capacity = sampler.getCapacity();
+            if(reservoir.size() < capacity) {
+                reservoir.add(new Entry<>(key, element));
+            } else if(!reservoir.isEmpty() && key < reservoir.peek().key) {
+                reservoir.poll();
+                reservoir.add(new Entry<>(key, element));
+            }
+            while(reservoir.size() > capacity) {
+                reservoir.poll();
+            }
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        private List<T> getSmallest(int amount) {
+            List<Entry<T>> entries = new ArrayList<>(reservoir);
+            entries.sort(Comparator.comparingDouble(entry -> entry.key));
+
+            List<T> elements = new ArrayList<>(amount);
+            for(int i = 0; i < Math.min(amount, entries.size()); i++) {
+                elements.add(entries.get(i).element);
+            }
+            return elements;
+        }
+    }
+
+    private static class Entry<T> {
+
+        private final double key;
+        private final T element;
+
+        private Entry(double key, T element) {
+            this.key = key;
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package de.hpi.machinelearning.persistence;
+
+import de.hpi.machinelearning.NGramSimilarity;
+import de.hpi.modelgenerator.persistence.ParsedOffer;
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import javax.validation.constraints.NotNull;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * Column store for the features of offer pairs. Numeric features are stored in one double array and nominal features
+ * are stored as value indices in one byte array. All rows share one immutable header, Weka instances are only created
+ * when the matrix is converted for training.
+ */
+public class FeatureMatrix {
+
+    public static final int FEATURE_COUNT = 13;
+    public static final int CLASS_INDEX = 12;
+    private static final int NUMERIC_FEATURE_COUNT = 5;
+    private static final int NOMINAL_FEATURE_COUNT = FEATURE_COUNT - NUMERIC_FEATURE_COUNT;
+
+    private static final Instances HEADER = createHeader();
+    private static final byte TRUE = (byte) HEADER.attribute(CLASS_INDEX).indexOfValue(AttributeVector.TRUE);
+    private static final byte FALSE = (byte) HEADER.attribute(CLASS_INDEX).indexOfValue(AttributeVector.FALSE);
+    private static final byte NULL = (byte) HEADER.attribute(CLASS_INDEX).indexOfValue(AttributeVector.NULL);
+
+    private final int capacity;
+    private final double[] numericValues;
+    private final byte[] nominalValues;
+    private final BitSet filledRows;
+
+    public FeatureMatrix(int capacity) {
+        this.capacity = capacity;
+        this.numericValues = new double[capacity * NUMERIC_FEATURE_COUNT];
+        this.nominalValues = new byte[capacity * NOMINAL_FEATURE_COUNT];
+        this.filledRows = new BitSet(capacity);
+    }
+
+    /**
+     * This method returns an empty data set with the header shared by all feature rows.
+     * @param capacity Initial capacity of the data set
+     * @return Empty data set with class index set
+     */
+    public static Instances createDataSet(int capacity) {
+        Instances dataSet = new Instances(HEADER, capacity);
+        dataSet.setClassIndex(CLASS_INDEX);
+        return dataSet;
+    }
+
+    /**
+     * This method computes the features of an offer pair and writes them to the given row.
+     * @param row Row index
+     * @param shopOffer Offer of idealo
+     * @param parsedOffer Offer of the shop
+     * @param isMatch Whether both offers match
+     * @param classifiedBrand Brand of the parsed offer that was determined by the brand classifier
+     */
+    public void setRow(int row, @NotNull ShopOffer shopOffer, @NotNull ParsedOffer parsedOffer, boolean isMatch, String classifiedBrand) {
+        int numericOffset = row * NUMERIC_FEATURE_COUNT;
+        NGramSimilarity similarity = NGramSimilarity.forCurrentThread();
+        similarity.compare(getMapValue(shopOffer.getTitles()), parsedOffer.getTitle());
+        numericValues[numericOffset] = similarity.getJaccard();
+        numericValues[numericOffset + 1] = similarity.getCosine();
+        similarity.compare(getMapValue(shopOffer.getDescriptions()), parsedOffer.getDescription());
+        numericValues[numericOffset + 2] = similarity.getJaccard();
+        numericValues[numericOffset + 3] = similarity.getCosine();
+        numericValues[numericOffset + 4] = getPercentualDeviance(getMapValue(shopOffer.getPrices()), parsedOffer.getPrice());
+
+        int nominalOffset = row * NOMINAL_FEATURE_COUNT;
+        nominalValues[nominalOffset] = getEquation(getMapValue(shopOffer.getUrls()), parsedOffer.getUrl());
+        nominalValues[nominalOffset + 1] = getEquation(shopOffer.getBrandName(), parsedOffer.getBrandName());
+        nominalValues[nominalOffset + 2] = getEquation(shopOffer.getBrandName(), classifiedBrand);
+        nominalValues[nominalOffset + 3] = getEquation(shopOffer.getMappedCatalogCategory(), parsedOffer.getCategory());
+        nominalValues[nominalOffset + 4] = compareImageIds(shopOffer.getImageId(), parsedOffer.getImageUrl());
+        nominalValues[nominalOffset + 5] = getEquation(shopOffer.getHan(), parsedOffer.getHan());
+        nominalValues[nominalOffset + 6] = getEquation(shopOffer.getSku(), parsedOffer.getSku());
+        nominalValues[nominalOffset + 7] = isMatch ? TRUE : FALSE;
+
+        synchronized (filledRows) {
+            filledRows.set(row);
+        }
+    }
+
+    /**
+     * This method returns the values of one row in the attribute order of the header.
+     * @param row Row index
+     * @return Feature values (nominal features as value indices)
+     */
+    public double[] getRow(int row) {
+        double[] values = new double[FEATURE_COUNT];
+        System.arraycopy(numericValues, row * NUMERIC_FEATURE_COUNT, values, 0, NUMERIC_FEATURE_COUNT);
+        for(int i = 0; i < NOMINAL_FEATURE_COUNT; i++) {
+            values[NUMERIC_FEATURE_COUNT + i] = nominalValues[row * NOMINAL_FEATURE_COUNT + i];
+        }
+        return values;
+    }
+
+    public int size() {
+        synchronized (filledRows) {
+            return filledRows.cardinality();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * This method converts all filled rows (in row order) to a Weka data set.
+     * @return Data set with class index set
+     */
+    public Instances toInstances() {
+        Instances dataSet = createDataSet(size());
+        BitSet rows;
+        synchronized (filledRows) {
+            rows = (BitSet) filledRows.clone();
+        }
+        for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            dataSet.add(new DenseInstance(1d, getRow(row)));
+        }
+        return dataSet;
+    }
+
+    static double[] getFeatures(ShopOffer shopOffer, ParsedOffer parsedOffer, boolean isMatch, String classifiedBrand) {
+        FeatureMatrix matrix = new FeatureMatrix(1);
+        matrix.setRow(0, shopOffer, parsedOffer, isMatch, classifiedBrand);
+        return matrix.getRow(0);
+    }
+
+    static Instances getHeader() {
+        return HEADER;
+    }
+
+    private static Instances createHeader() {
+        Instances header = new Instances("Rel", new AttributeVector(), 0);
+        header.setClassIndex(CLASS_INDEX);
+        return header;
+    }
+
+    private static <T> T getMapValue(Map<String, T> map) {
+        return (map == null) ? null : map.get(map.keySet().iterator().next());
+    }
+
+    private static byte getEquation(String a, String b) {
+        return (a == null || b == null) ? NULL : a.equalsIgnoreCase(b) ? TRUE : FALSE;
+    }
+
+    private static double getPercentualDeviance(Double a, String b) {
+        double bValue;
+
+        if(a == null || b == null) {
+            return -1;
+        }
+
+        try {
+            bValue = Double.valueOf(b);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+
+        return (a == 0 || bValue == 0) ? -1 : 1 - (Math.min(a, bValue) / Math.max(a, bValue));
+    }
+
+    private static byte compareImageIds(String a, String b) {
+        if(a == null || b == null) {
+            return NULL;
+        }
+
+        if(a.length() > b.length()) {
+            return a.contains(b) ? TRUE : FALSE;
+        } else if(b.length() > a.length()) {
+            return b.contains(a) ? TRUE : FALSE;
+        }
+
+        return a.equals(b) ? TRUE : FALSE;
+    }
+}
@@ -1,9 +1,11 @@
 package de.hpi.machinelearning.persistence;
 
 
+import de.hpi.machinelearning.ModelEvaluation;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import weka.classifiers.Classifier;
 import weka.core.SerializationHelper;
 
@@ -13,21 +15,78 @@ import java.io.OutputStream;
 @Getter
 @Setter
 @RequiredArgsConstructor
+@Slf4j
 public class LabeledModel {
 
     private final Classifier model;
     private final String modelType;
+    private String configuration;
+    private long trainingMillis;
+    private double rowsPerSecond;
+    private Exception failure;
+    private ModelEvaluation evaluation;
+
+    /**
+     * A model is failed if its training threw an exception. Failed models must not be scored or saved.
+     * @return Whether training of the model failed
+     */
+    public boolean isFailed() {
+        return getFailure() != null;
+    }
 
     public ScoredModel toScoredModel(double score) {
-        OutputStream out = new ByteArrayOutputStream(100000000);
+        return new ScoredModel(serialize(), getModelType(), score);
+    }
+
+    /**
+     * This method serializes the model as it is stored for the matcher.
+     * @return Serialized model or null, if the model cannot be serialized
+     */
+    public byte[] serialize() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
 
         try {
             SerializationHelper.write(out, getModel());
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Could not serialize model {}: {}", getModelType(), e.getMessage(), e);
+            return null;
         }
 
-         byte[] model = ((ByteArrayOutputStream) out).toByteArray();
-        return new ScoredModel(model, getModelType(), score);
+        return out.toByteArray();
+    }
+
+    /**
+     * This method measures the size of the serialized model without keeping the bytes.
+     * @return Size of the serialized model in bytes or -1, if the model cannot be serialized
+     */
+    public long measureSerializedSize() {
+        CountingOutputStream out = new CountingOutputStream();
+
+        try {
+            SerializationHelper.write(out, getModel());
+        } catch (Exception e) {
+            log.error("Could not measure the serialized size of model {}: {}", getModelType(), e.getMessage(), e);
+            return -1;
+        }
+
+        return out.count;
+    }
+
+    /**
+     * Discards the written bytes and only counts them.
+     */
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
     }
 }
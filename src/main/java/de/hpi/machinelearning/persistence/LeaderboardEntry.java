@@ -0,0 +1,115 @@
+package de.hpi.machinelearning.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.hpi.machinelearning.ModelEvaluation;
+import de.hpi.machinelearning.ModelObjective;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Transient;
+
+/**
+ * Metrics of one candidate model of a training run.
+ * The entry keeps the trained model only until the leaderboard chose its model, so just the chosen model is serialized.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class LeaderboardEntry {
+
+    private String modelType;
+    private String configuration;
+    private boolean failed;
+    private boolean chosen;
+    private boolean rejected;
+    private double accuracy;
+    private double precision;
+    private double recall;
+    private double fMeasure;
+    private double areaUnderRoc;
+    private long trainingMillis;
+    private double nanosPerRow;
+    private double rowsPerSecond;
+    private long serializedSize;
+
+    @JsonIgnore
+    @Transient
+    @Getter(AccessLevel.PRIVATE)
+    @Setter(AccessLevel.NONE)
+    private LabeledModel model;
+
+    LeaderboardEntry(LabeledModel model) {
+        this.modelType = model.getModelType();
+        this.configuration = model.getConfiguration();
+        this.trainingMillis = model.getTrainingMillis();
+        this.rowsPerSecond = model.getRowsPerSecond();
+        this.failed = model.isFailed() || model.getEvaluation() == null;
+        if(isFailed()) {
+            return;
+        }
+
+        ModelEvaluation evaluation = model.getEvaluation();
+        this.accuracy = evaluation.getAccuracy();
+        this.precision = evaluation.getPrecision();
+        this.recall = evaluation.getRecall();
+        this.fMeasure = evaluation.getFMeasure();
+        this.areaUnderRoc = evaluation.getAreaUnderRoc();
+        this.nanosPerRow = evaluation.getNanosPerRow();
+        long size = model.measureSerializedSize();
+        this.serializedSize = Math.max(0, size);
+        this.failed = size < 0;
+        this.model = isFailed() ? null : model;
+    }
+
+    /**
+     * This method returns the value of the entry regarding the given objective. Higher values are better.
+     * @param objective Objective for choosing a model
+     * @return Value of the objective
+     */
+    @JsonIgnore
+    public double getValue(ModelObjective objective) {
+        return new ModelEvaluation(getAccuracy(), getPrecision(), getRecall(), getAreaUnderRoc(), getNanosPerRow())
+                .getValue(objective);
+    }
+
+    @JsonIgnore
+    public double getErrorRate() {
+        return 1 - getAccuracy();
+    }
+
+    /**
+     * An entry can be chosen if the model was trained and evaluated and is not rejected for its throughput.
+     * @return Whether the entry can be chosen
+     */
+    @JsonIgnore
+    public boolean isEligible() {
+        return !isFailed() && !isRejected();
+    }
+
+    /**
+     * This method drops the trained model, the entry then only keeps its metrics.
+     */
+    void releaseModel() {
+        this.model = null;
+    }
+
+    /**
+     * This method serializes the model and converts the entry to the model that is used by the matcher.
+     * @return Serialized model scored with its error rate on held-out data
+     * @throws IllegalStateException if the entry was not chosen or the model cannot be serialized
+     */
+    public ScoredModel toScoredModel() {
+        byte[] serializedModel = (getModel() == null) ? null : getModel().serialize();
+        if(serializedModel == null) {
+            throw new IllegalStateException("The model of " + getModelType() + " is not available for saving.");
+        }
+
+        ScoredModel scoredModel = new ScoredModel(serializedModel, getModelType(), getErrorRate());
+        scoredModel.setRowsPerSecond(getRowsPerSecond());
+        scoredModel.setModelSize(getSerializedSize());
+        return scoredModel;
+    }
+}
@@ -0,0 +1,112 @@
+package de.hpi.machinelearning.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import de.hpi.machinelearning.ModelObjective;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * All candidate models of one training run, ordered from best to worst.
+ * Candidates are ranked by the objective. Candidates whose value is within the tolerance of the best value count as
+ * tied, of those the one with the highest measured throughput (and then the smallest one) is chosen, because the
+ * matcher scores millions of offer pairs with the chosen model. Candidates below the minimum throughput are rejected.
+ * Rejected and failed candidates are kept at the end of the leaderboard. Only the chosen entry keeps its model.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ModelLeaderboard {
+
+    private Date createdAt;
+    private ModelObjective objective;
+    private double tolerance;
+    private double minimumRowsPerSecond;
+    private List<LeaderboardEntry> entries = new ArrayList<>();
+
+    /**
+     * This method ranks the given models and marks the chosen one.
+     * @param models Trained models, failed models are listed but never chosen
+     * @param objective Objective for choosing a model
+     * @param tolerance Maximum difference to the best value of the objective, for which models count as tied
+     * @param minimumRowsPerSecond Minimum throughput of a model to be chosen (0 accepts every model)
+     */
+    public ModelLeaderboard(List<LabeledModel> models, ModelObjective objective, double tolerance, double minimumRowsPerSecond) {
+        this.createdAt = new Date();
+        this.objective = objective;
+        this.tolerance = Math.max(0, tolerance);
+        this.minimumRowsPerSecond = minimumRowsPerSecond;
+        for(LabeledModel model : models) {
+            LeaderboardEntry entry = new LeaderboardEntry(model);
+            entry.setRejected(!entry.isFailed() && entry.getRowsPerSecond() < minimumRowsPerSecond);
+            getEntries().add(entry);
+        }
+
+        getEntries().sort(Comparator.comparing(LeaderboardEntry::isFailed)
+                .thenComparing(LeaderboardEntry::isRejected)
+                .thenComparing(Comparator.comparingDouble((LeaderboardEntry entry) -> entry.getValue(objective)).reversed())
+                .thenComparing(Comparator.comparingDouble(LeaderboardEntry::getRowsPerSecond).reversed())
+                .thenComparingLong(LeaderboardEntry::getSerializedSize));
+        LeaderboardEntry chosen = choose();
+        for(LeaderboardEntry entry : getEntries()) {
+            if(entry == chosen) {
+                entry.setChosen(true);
+            } else {
+                entry.releaseModel();
+            }
+        }
+    }
+
+    /**
+     * This method returns the chosen model.
+     * @return Chosen entry or null, if all candidates failed or were rejected
+     */
+    @JsonIgnore
+    public LeaderboardEntry getChosen() {
+        return getEntries().stream().filter(LeaderboardEntry::isChosen).findFirst().orElse(null);
+    }
+
+    private LeaderboardEntry choose() {
+        if(getEntries().isEmpty() || !getEntries().get(0).isEligible()) {
+            return null;
+        }
+
+        double bestValue = getEntries().get(0).getValue(getObjective());
+        LeaderboardEntry chosen = null;
+        for(LeaderboardEntry entry : getEntries()) {
+            if(!entry.isEligible() || entry.getValue(getObjective()) < bestValue - getTolerance()) {
+                break;
+            }
+            if(chosen == null || isFaster(entry, chosen)) {
+                chosen = entry;
+            }
+        }
+        return chosen;
+    }
+
+    private static boolean isFaster(LeaderboardEntry entry, LeaderboardEntry other) {
+        return entry.getRowsPerSecond() > other.getRowsPerSecond()
+                || (entry.getRowsPerSecond() == other.getRowsPerSecond() && entry.getSerializedSize() < other.getSerializedSize());
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("Leaderboard by %s:", getObjective()));
+        for(LeaderboardEntry entry : getEntries()) {
+            builder.append(entry.isFailed()
+                    ? String.format("%n  %s (%s) failed", entry.getModelType(), entry.getConfiguration())
+                    : String.format("%n  %s%s (%s) %s %.4f, trained in %d ms, %.0f rows per second, %d KB%s",
+                    entry.isChosen() ? "* " : "", entry.getModelType(), entry.getConfiguration(), getObjective(),
+                    entry.getValue(getObjective()), entry.getTrainingMillis(), entry.getRowsPerSecond(),
+                    entry.getSerializedSize() / 1024, entry.isRejected() ? ", rejected (too slow)" : ""));
+        }
+        return builder.toString();
+    }
+}
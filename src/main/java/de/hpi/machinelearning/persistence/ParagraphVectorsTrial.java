@@ -0,0 +1,43 @@
+package de.hpi.machinelearning.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.springframework.data.annotation.Transient;
+
+/**
+ * Hyperparameters and measured cost of one paragraph vectors trial of the hyperparameter search.
+ * The trained network is kept until it is saved, only the hyperparameters and the cost are serialized with it.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ParagraphVectorsTrial {
+
+    private int layerSize;
+    private int windowSize;
+    private int epochs;
+    private double accuracy;
+    private long trainingMillis;
+    private double nanosPerDocument;
+
+    @JsonIgnore
+    @Transient
+    private ParagraphVectors paragraphVectors;
+
+    public ParagraphVectorsTrial(int layerSize, int windowSize, int epochs) {
+        this.layerSize = layerSize;
+        this.windowSize = windowSize;
+        this.epochs = epochs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(layerSize=%d, windowSize=%d, epochs=%d): accuracy %.4f, trained in %d ms, %.1f us per document",
+                getLayerSize(), getWindowSize(), getEpochs(), getAccuracy(), getTrainingMillis(), getNanosPerDocument() / 1000);
+    }
+}
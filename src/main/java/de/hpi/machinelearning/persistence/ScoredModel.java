@@ -14,5 +14,7 @@ public class ScoredModel {
     private final byte[] modelByteArray;
     private final String modelType;
     private final double score;
+    private double rowsPerSecond;
+    private long modelSize;
 
 }
@@ -10,6 +10,7 @@ import lombok.Setter;
 import org.deeplearning4j.models.embeddings.loader.WordVectorSerializer;
 import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
 import org.springframework.data.annotation.Id;
+import org.springframework.util.DigestUtils;
 
 import java.io.*;
 
@@ -21,6 +22,7 @@ public class SerializedParagraphVectors {
 
     @Id private String networkType;
     private byte[] serializedNeuralNetwork;
+    private ParagraphVectorsTrial hyperparameters;
 
     @JsonIgnore
     public SerializedParagraphVectors(ParagraphVectors vectors, String type) throws IOException {
@@ -31,6 +33,28 @@ public class SerializedParagraphVectors {
         this.networkType = type;
     }
 
+    /**
+     * This constructor serializes the best network of a hyperparameter search along with its hyperparameters and cost.
+     * @param vectors Trained network
+     * @param type Type of the network
+     * @param hyperparameters Trial that trained the network, null if it was trained with the default hyperparameters
+     * @throws IOException when the network cannot be serialized
+     */
+    @JsonIgnore
+    public SerializedParagraphVectors(ParagraphVectors vectors, String type, ParagraphVectorsTrial hyperparameters) throws IOException {
+        this(vectors, type);
+        this.hyperparameters = hyperparameters;
+    }
+
+    /**
+     * This method returns the version of the network, which changes whenever the network is trained again.
+     * @return MD5 hash of the serialized network
+     */
+    @JsonIgnore
+    public String getVersion() {
+        return DigestUtils.md5DigestAsHex(getSerializedNeuralNetwork());
+    }
+
     @JsonIgnore
     public ParagraphVectors getNeuralNetwork() throws IOException {
         InputStream in = new ByteArrayInputStream(getSerializedNeuralNetwork());
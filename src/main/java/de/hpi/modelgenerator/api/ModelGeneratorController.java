@@ -1,7 +1,10 @@
 package de.hpi.modelgenerator.api;
 
 import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+import de.hpi.modelgenerator.persistence.TrainingJob;
 import de.hpi.modelgenerator.services.ModelGeneratorService;
+import de.hpi.modelgenerator.services.TrainingJobService;
+import de.hpi.modelgenerator.services.TrainingPipeline;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
@@ -9,11 +12,18 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @Slf4j
@@ -22,49 +32,90 @@ import java.io.IOException;
 public class ModelGeneratorController {
 
     private final ModelGeneratorService service;
-    private final ClassifierTrainingState categoryClassifierTrainingState = new ClassifierTrainingState();
-    private final ClassifierTrainingState brandClassifierTrainingState = new ClassifierTrainingState();
-    private final ClassifierTrainingState modelTrainingState = new ClassifierTrainingState();
+    private final TrainingJobService jobService;
+    private final TrainingPipeline pipeline;
+    private final ClassifierTrainingState categoryClassifierTrainingState = new ClassifierTrainingState("category");
+    private final ClassifierTrainingState brandClassifierTrainingState = new ClassifierTrainingState("brand");
+    private final ClassifierTrainingState modelTrainingState = new ClassifierTrainingState("model");
 
     @ApiOperation(value = "Generate category classifier")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully generated category classifier."),
-            @ApiResponse(code = 500, message = "There was an error (serializing the classifier).")})
+            @ApiResponse(code = 200, message = "Successfully queued generation of category classifier. In REJECT mode the job fails without a free training slot."),
+            @ApiResponse(code = 503, message = "Too many training jobs are queued.")})
     @RequestMapping(value = "/generateCategoryClassifier", method = RequestMethod.POST)
-    public void generateCategoryClassifier() throws IOException {
-        getService().generateCategoryClassifier(getCategoryClassifierTrainingState());
-
+    public TrainingJob generateCategoryClassifier() {
+        return getJobService().submit("categoryClassifier", this::runCategoryClassifier);
     }
 
     @ApiOperation(value = "Generate brand classifier")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully generated brand classifier."),
-            @ApiResponse(code = 500, message = "There was an error (serializing the classifier).")})
+            @ApiResponse(code = 200, message = "Successfully queued generation of brand classifier. In REJECT mode the job fails without a free training slot."),
+            @ApiResponse(code = 503, message = "Too many training jobs are queued.")})
     @RequestMapping(value = "/generateBrandClassifier", method = RequestMethod.POST)
-    public void generateBrandClassifier() throws IOException {
-        getService().generateBrandClassifier(getBrandClassifierTrainingState());
-
+    public TrainingJob generateBrandClassifier() {
+        return getJobService().submit("brandClassifier", this::runBrandClassifier);
     }
 
     @ApiOperation(value = "Generate model")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully generated model."),
-            @ApiResponse(code = 500, message = "There was an error (serializing the model). Make sure that brand classifier is present.")})
+            @ApiResponse(code = 200, message = "Successfully queued generation of model. Make sure that brand classifier is present, otherwise the job fails. In REJECT mode it also fails without a free training slot."),
+            @ApiResponse(code = 503, message = "Too many training jobs are queued.")})
     @RequestMapping(value = "/generateModel", method = RequestMethod.POST)
-    public void generateModel() throws IOException {
-        getService().generateModel(getModelTrainingState());
+    public TrainingJob generateModel() {
+        return getJobService().submit("model", this::runModel);
     }
 
     @ApiOperation(value = "Generate all classifiers")
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "Successfully generated all classifier."),
-            @ApiResponse(code = 500, message = "There was an error (serializing the classifiers).")})
+            @ApiResponse(code = 200, message = "Successfully queued generation of all classifiers. In REJECT mode the job fails without a free training slot."),
+            @ApiResponse(code = 503, message = "Too many training jobs are queued.")})
     @RequestMapping(value = "/generateAllClassifiers", method = RequestMethod.POST)
-    public void generateAllClassifiers() throws IOException {
-        getService().refreshTrainingAndTestingSet();
-        generateCategoryClassifier();
-        generateBrandClassifier();
-        generateModel();
-        getService().freeTestingSet();
+    public TrainingJob generateAllClassifiers() {
+        return getJobService().submit("allClassifiers", () -> getPipeline().generateAllClassifiers(
+                getCategoryClassifierTrainingState(), getBrandClassifierTrainingState(), getModelTrainingState()));
+    }
+
+    @ApiOperation(value = "Get all training jobs")
+    @RequestMapping(value = "/jobs", method = RequestMethod.GET)
+    public List<TrainingJob> getJobs() {
+        return getJobService().getAllJobs();
+    }
+
+    @ApiOperation(value = "Get phase and progress of a training job")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Status of the training job."),
+            @ApiResponse(code = 404, message = "There is no training job with this ID.")})
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.GET)
+    public ResponseEntity<TrainingJob> getJob(@PathVariable String id) {
+        TrainingJob job = getJobService().getJob(id);
+        return (job == null) ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @ApiOperation(value = "Cancel a training job")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Requested cancellation of the training job."),
+            @ApiResponse(code = 404, message = "There is no training job with this ID.")})
+    @RequestMapping(value = "/jobs/{id}", method = RequestMethod.DELETE)
+    public ResponseEntity<TrainingJob> cancelJob(@PathVariable String id) {
+        TrainingJob job = getJobService().cancel(id);
+        return (job == null) ? ResponseEntity.notFound().build() : ResponseEntity.ok(job);
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public void handleRejectedJob(RejectedExecutionException e) {
+        log.warn("Rejected training job: {}", e.getMessage());
+    }
+
+    private void runCategoryClassifier() throws IOException {
+        getService().generateCategoryClassifier(getCategoryClassifierTrainingState());
+    }
+
+    private void runBrandClassifier() throws IOException {
+        getService().generateBrandClassifier(getBrandClassifierTrainingState());
+    }
+
+    private void runModel() throws IOException {
+        getService().generateModel(getModelTrainingState());
     }
 }
@@ -0,0 +1,23 @@
+package de.hpi.modelgenerator.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Brand of a parsed offer as determined by the brand classifier with the given version.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ClassifiedBrand {
+
+    private String brand;
+    private double confidence;
+    private String modelVersion;
+
+}
@@ -1,12 +1,24 @@
 package de.hpi.modelgenerator.persistence;
 
 import lombok.Getter;
-import lombok.Setter;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Running trainings of one classifier. The amount is only changed by the training slots, which check the limits and
+ * start a training atomically.
+ */
 @Getter
-@Setter
 public class ClassifierTrainingState {
 
-    private boolean currentlyLearning = false;
+    private final String classifier;
+    private final AtomicInteger activeTrainings = new AtomicInteger();
+
+    public ClassifierTrainingState(String classifier) {
+        this.classifier = classifier;
+    }
 
+    public boolean isCurrentlyLearning() {
+        return getActiveTrainings().get() > 0;
+    }
 }
@@ -24,5 +24,6 @@ public class MatchingResult {
     private String higherLevelIdealoCategory;
     private String higherLevelIdealoCategoryName;
     private ParsedOffer parsedData;
+    private ClassifiedBrand classifiedBrand;
 
 }
@@ -0,0 +1,211 @@
+package de.hpi.modelgenerator.persistence;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Status and progress of an asynchronous training job.
+ * The job that runs on the current thread is available with {@link #current()}, so the training code can report its
+ * phase and progress and check for cancellation without passing the job around. Progress counters may be advanced
+ * from any thread.
+ * Work that runs concurrently within a job reports to its own stage job, so every stage has its own phase, progress
+ * and ETA. A stage is cancelled together with its job.
+ * The status only moves from queued to running to finished, or from queued directly to cancelled. The transitions are
+ * atomic, so a job that is cancelled while it is about to start either starts or is cancelled, but not both.
+ */
+@Getter
+public class TrainingJob {
+
+    private static final ThreadLocal<TrainingJob> CURRENT = new ThreadLocal<>();
+
+    private final String id = UUID.randomUUID().toString();
+    private final String type;
+    private final Date createdAt = new Date();
+    private volatile Date startedAt;
+    private volatile Date finishedAt;
+    @Getter(AccessLevel.NONE) private final AtomicReference<TrainingJobStatus> status = new AtomicReference<>(TrainingJobStatus.QUEUED);
+    private volatile TrainingPhase phase = TrainingPhase.QUEUED;
+    private volatile long phaseStartTime = System.currentTimeMillis();
+    private volatile long total;
+    @Getter(AccessLevel.NONE) private final AtomicLong processed = new AtomicLong();
+    private volatile double fetchedOffersPerSecond;
+    private volatile int inFlightRequests;
+    @Setter private volatile String error;
+    @Getter(AccessLevel.NONE) private volatile boolean cancelRequested;
+    @JsonIgnore private final TrainingJob parent;
+    private final List<TrainingJob> stages = new CopyOnWriteArrayList<>();
+
+    public TrainingJob(String type) {
+        this(type, null);
+    }
+
+    private TrainingJob(String type, TrainingJob parent) {
+        this.type = type;
+        this.parent = parent;
+    }
+
+    /**
+     * This method returns the job that runs on the current thread.
+     * @return Current job or an untracked job, if the thread does not run a job
+     */
+    public static TrainingJob current() {
+        TrainingJob job = CURRENT.get();
+        return (job == null) ? new TrainingJob("untracked") : job;
+    }
+
+    public static void setCurrent(TrainingJob job) {
+        if(job == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(job);
+        }
+    }
+
+    /**
+     * This method starts a new phase and resets the progress counters.
+     * @param phase New phase
+     * @param total Amount of items that are processed in this phase (0 if unknown)
+     */
+    public void enterPhase(TrainingPhase phase, long total) {
+        checkCancelled();
+        this.phase = phase;
+        this.total = total;
+        this.processed.set(0);
+        this.fetchedOffersPerSecond = 0;
+        this.inFlightRequests = 0;
+        this.phaseStartTime = System.currentTimeMillis();
+    }
+
+    /**
+     * This method reports the throughput of the offer fetch that runs in the current phase.
+     * @param offersPerSecond Processed offers per second
+     * @param inFlightRequests Amount of requests to the cache that did not return yet
+     */
+    public void reportOfferFetch(double offersPerSecond, int inFlightRequests) {
+        this.fetchedOffersPerSecond = offersPerSecond;
+        this.inFlightRequests = inFlightRequests;
+    }
+
+    /**
+     * This method adds a stage to the job. The stage reports its own phase and progress, so stages that run at the
+     * same time do not reset each other's progress.
+     * @param type Name of the stage
+     * @return Queued stage
+     */
+    public TrainingJob addStage(String type) {
+        TrainingJob stage = new TrainingJob(type, this);
+        stages.add(stage);
+        return stage;
+    }
+
+    public void advance(long amount) {
+        processed.addAndGet(amount);
+    }
+
+    /**
+     * This method aborts the work of the job, if its cancellation was requested.
+     * @throws CancellationException when the job is cancelled
+     */
+    public void checkCancelled() {
+        if(isCancelRequested()) {
+            throw new CancellationException("Training job " + getId() + " was cancelled.");
+        }
+    }
+
+    /**
+     * A stage counts as cancelled as soon as its job is cancelled.
+     * @return Whether cancellation of the job was requested
+     */
+    @JsonIgnore
+    public boolean isCancelRequested() {
+        return cancelRequested || (getParent() != null && getParent().isCancelRequested());
+    }
+
+    public void requestCancellation() {
+        this.cancelRequested = true;
+    }
+
+    /**
+     * This method marks a queued job as running.
+     * @return Whether the job was queued and is running now
+     */
+    public boolean start() {
+        if(!status.compareAndSet(TrainingJobStatus.QUEUED, TrainingJobStatus.RUNNING)) {
+            return false;
+        }
+        this.startedAt = new Date();
+        return true;
+    }
+
+    /**
+     * This method finishes a running job.
+     * @param status Final status of the job
+     * @return Whether the job was running and is finished now
+     */
+    public boolean finish(TrainingJobStatus status) {
+        return finish(TrainingJobStatus.RUNNING, status);
+    }
+
+    /**
+     * This method cancels a job that has not started yet.
+     * @return Whether the job was queued and is cancelled now
+     */
+    public boolean cancelQueued() {
+        return finish(TrainingJobStatus.QUEUED, TrainingJobStatus.CANCELLED);
+    }
+
+    public TrainingJobStatus getStatus() {
+        return status.get();
+    }
+
+    private boolean finish(TrainingJobStatus expected, TrainingJobStatus status) {
+        if(!this.status.compareAndSet(expected, status)) {
+            return false;
+        }
+        this.finishedAt = new Date();
+        if(status == TrainingJobStatus.SUCCEEDED) {
+            this.phase = TrainingPhase.DONE;
+        }
+        return true;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return getFinishedAt() != null;
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * This method returns the throughput of the current phase.
+     * @return Processed items per second
+     */
+    public double getItemsPerSecond() {
+        long duration = System.currentTimeMillis() - getPhaseStartTime();
+        return (duration <= 0) ? 0 : getProcessed() * 1000d / duration;
+    }
+
+    /**
+     * This method estimates the remaining time of the current phase from its throughput.
+     * @return Remaining seconds or -1, if they cannot be estimated
+     */
+    public long getEtaSeconds() {
+        double itemsPerSecond = getItemsPerSecond();
+        if(isFinished() || getTotal() <= 0 || itemsPerSecond <= 0) {
+            return -1;
+        }
+        return Math.round(Math.max(0, getTotal() - getProcessed()) / itemsPerSecond);
+    }
+}
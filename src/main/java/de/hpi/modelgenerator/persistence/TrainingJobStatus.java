@@ -0,0 +1,9 @@
+package de.hpi.modelgenerator.persistence;
+
+public enum TrainingJobStatus {
+    QUEUED,
+    RUNNING,
+    SUCCEEDED,
+    FAILED,
+    CANCELLED
+}
@@ -0,0 +1,15 @@
+package de.hpi.modelgenerator.persistence;
+
+/**
+ * Phase of a training job.
+ */
+public enum TrainingPhase {
+    QUEUED,
+    LOADING,
+    FETCHING_OFFERS,
+    FEATURIZING,
+    TRAINING,
+    EVALUATING,
+    PERSISTING,
+    DONE
+}
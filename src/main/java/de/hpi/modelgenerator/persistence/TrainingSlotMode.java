@@ -0,0 +1,15 @@
+package de.hpi.modelgenerator.persistence;
+
+/**
+ * Behaviour of a training request when no training slot is free.
+ */
+public enum TrainingSlotMode {
+    /**
+     * Wait until a slot is free.
+     */
+    QUEUE,
+    /**
+     * Fail immediately.
+     */
+    REJECT
+}
@@ -5,39 +5,177 @@ import de.hpi.modelgenerator.properties.CacheProperties;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
 import org.springframework.retry.annotation.Backoff;
 import org.springframework.retry.annotation.Retryable;
+import org.springframework.retry.backoff.FixedBackOffPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Repository;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.annotation.PreDestroy;
 import java.net.URI;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 @Getter(AccessLevel.PRIVATE)
 @Setter(AccessLevel.PRIVATE)
 @Repository
+@Slf4j
 public class Cache {
 
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_MILLIS = 5000;
+
     private final RestTemplate restTemplate;
+    private final RetryTemplate retryTemplate;
     private final CacheProperties properties;
+    private final LocalOfferStore localOfferStore;
+    private final ExecutorService requestExecutor;
+    private volatile boolean bulkRouteAvailable;
 
     @Autowired
-    public Cache(RestTemplateBuilder restTemplateBuilder, CacheProperties cacheProperties) {
+    public Cache(RestTemplateBuilder restTemplateBuilder, CacheProperties cacheProperties, LocalOfferStore localOfferStore) {
         this.properties = cacheProperties;
+        this.localOfferStore = localOfferStore;
         this.restTemplate = restTemplateBuilder.build();
+        this.retryTemplate = createRetryTemplate();
+        this.requestExecutor = Executors.newFixedThreadPool(Math.max(1, cacheProperties.getMaxConcurrentRequests()));
+        this.bulkRouteAvailable = cacheProperties.getGetOffersRoute() != null;
     }
 
     @Retryable(
             value = {HttpClientErrorException.class },
-            maxAttempts = 5,
-            backoff = @Backoff(delay = 5000))
+            maxAttempts = MAX_ATTEMPTS,
+            backoff = @Backoff(delay = RETRY_DELAY_MILLIS))
     public ShopOffer getOffer(long shopId, String offerKey) {
+        ShopOffer offer = getLocalOfferStore().get(shopId, offerKey);
+        if(offer == null) {
+            offer = fetchOffer(shopId, offerKey);
+            getLocalOfferStore().put(shopId, offerKey, offer);
+        }
+        return offer;
+    }
+
+    /**
+     * This method fetches multiple offers of one shop. Offers that are not stored locally are requested in batches of
+     * the configured size using the bulk route of the cache. If the cache does not provide this route, the offers of a
+     * batch are requested one by one with multiple requests in flight.
+     * @param shopId ID of the shop the offers belong to
+     * @param offerKeys Keys of the requested offers
+     * @return Fetched offers by their offer key. Offers that could not be fetched are missing.
+     */
+    public Map<String, ShopOffer> getOffers(long shopId, Collection<String> offerKeys) {
+        Map<String, ShopOffer> offers = new HashMap<>();
+        List<String> missingOfferKeys = new ArrayList<>();
+        for(String offerKey : new LinkedHashSet<>(offerKeys)) {
+            if(offerKey == null) continue;
+            ShopOffer storedOffer = getLocalOfferStore().get(shopId, offerKey);
+            if(storedOffer != null) {
+                offers.put(offerKey, storedOffer);
+            } else {
+                missingOfferKeys.add(offerKey);
+            }
+        }
+
+        int batchSize = Math.max(1, getProperties().getOfferBatchSize());
+        for(int start = 0; start < missingOfferKeys.size(); start += batchSize) {
+            List<String> batch = missingOfferKeys.subList(start, Math.min(start + batchSize, missingOfferKeys.size()));
+            Map<String, ShopOffer> fetchedOffers = getOfferBatch(shopId, batch);
+            fetchedOffers.forEach((offerKey, offer) -> getLocalOfferStore().put(shopId, offerKey, offer));
+            offers.putAll(fetchedOffers);
+        }
+        return offers;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        getRequestExecutor().shutdownNow();
+    }
+
+    private Map<String, ShopOffer> getOfferBatch(long shopId, List<String> offerKeys) {
+        if(isBulkRouteAvailable()) {
+            try {
+                ShopOffer[] offers = getRestTemplate().postForObject(getBulkOffersURI(shopId), offerKeys, ShopOffer[].class);
+                return toOfferMap(offers);
+            } catch (HttpClientErrorException e) {
+                if(isMissingRoute(e.getStatusCode())) {
+                    log.warn("Cache does not provide a bulk route ({}), falling back to single requests.", e.getStatusCode());
+                    setBulkRouteAvailable(false);
+                } else {
+                    log.warn("Could not fetch batch of {} offers of shop {}: {}", offerKeys.size(), shopId, e.getMessage());
+                }
+            }
+        }
+        return getOffersPipelined(shopId, offerKeys);
+    }
+
+    private Map<String, ShopOffer> getOffersPipelined(long shopId, List<String> offerKeys) {
+        List<CompletableFuture<ShopOffer>> requests = offerKeys.stream()
+                .map(offerKey -> CompletableFuture.supplyAsync(() -> getOfferOrNull(shopId, offerKey), getRequestExecutor()))
+                .collect(Collectors.toList());
+
+        Map<String, ShopOffer> offers = new HashMap<>();
+        for(int i = 0; i < offerKeys.size(); i++) {
+            ShopOffer offer = requests.get(i).join();
+            if(offer != null) {
+                offers.put(offerKeys.get(i), offer);
+            }
+        }
+        return offers;
+    }
+
+    private ShopOffer fetchOffer(long shopId, String offerKey) {
         return getRestTemplate().getForObject(getOffersURI(shopId, offerKey), ShopOffer.class);
     }
 
+    /**
+     * The pipelined requests do not pass the proxy of this bean, so they are retried with a template that uses the
+     * policy of {@link #getOffer(long, String)}.
+     */
+    private ShopOffer getOfferOrNull(long shopId, String offerKey) {
+        try {
+            return getRetryTemplate().execute(context -> fetchOffer(shopId, offerKey));
+        } catch (HttpClientErrorException e) {
+            log.warn("Could not fetch offer {} of shop {}: {}", offerKey, shopId, e.getMessage());
+            return null;
+        }
+    }
+
+    private static RetryTemplate createRetryTemplate() {
+        FixedBackOffPolicy backOffPolicy = new FixedBackOffPolicy();
+        backOffPolicy.setBackOffPeriod(RETRY_DELAY_MILLIS);
+        RetryTemplate retryTemplate = new RetryTemplate();
+        retryTemplate.setRetryPolicy(new SimpleRetryPolicy(MAX_ATTEMPTS,
+                Collections.<Class<? extends Throwable>, Boolean>singletonMap(HttpClientErrorException.class, true)));
+        retryTemplate.setBackOffPolicy(backOffPolicy);
+        return retryTemplate;
+    }
+
+    private static Map<String, ShopOffer> toOfferMap(ShopOffer[] offers) {
+        Map<String, ShopOffer> offerMap = new HashMap<>();
+        if(offers != null) {
+            for(ShopOffer offer : offers) {
+                if(offer != null && offer.getOfferKey() != null) {
+                    offerMap.put(offer.getOfferKey(), offer);
+                }
+            }
+        }
+        return offerMap;
+    }
+
+    private static boolean isMissingRoute(HttpStatus status) {
+        return status == HttpStatus.NOT_FOUND || status == HttpStatus.METHOD_NOT_ALLOWED;
+    }
 
     private URI getOffersURI(long shopID, String offerKey) {
         return UriComponentsBuilder.fromUriString(getProperties().getUri())
@@ -48,4 +186,12 @@ public class Cache {
                 .toUri();
     }
 
-}
\ No newline at end of file
+    private URI getBulkOffersURI(long shopID) {
+        return UriComponentsBuilder.fromUriString(getProperties().getUri())
+                .path(getProperties().getGetOffersRoute() + shopID)
+                .build()
+                .encode()
+                .toUri();
+    }
+
+}
@@ -0,0 +1,192 @@
+package de.hpi.modelgenerator.persistence.repo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import de.hpi.modelgenerator.properties.CacheProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Repository
+@Slf4j
+@Getter(AccessLevel.PRIVATE)
+public class LocalOfferStore {
+
+    private static final String FILE_EXTENSION = ".json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CacheProperties properties;
+    private final File directory;
+    private final Map<String, Long> index;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    public LocalOfferStore(CacheProperties properties) {
+        this(properties, new File(System.getProperty("user.dir") + "/offers"));
+    }
+
+    LocalOfferStore(CacheProperties properties, File directory) {
+        this.properties = properties;
+        this.directory = directory;
+        this.index = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if(size() > getProperties().getLocalStoreMaxEntries()) {
+                    deleteFile(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        if(isEnabled()) {
+            loadIndex();
+        }
+    }
+
+    /**
+     * This method returns a locally stored offer. Offers that are older than the configured time to live are removed.
+     * @param shopId ID of the shop the offer belongs to
+     * @param offerKey Key of the offer
+     * @return The stored offer or null, if it is not stored (anymore)
+     */
+    public ShopOffer get(long shopId, String offerKey) {
+        if(!isEnabled()) {
+            return null;
+        }
+
+        String key = getKey(shopId, offerKey);
+        Long storedAt;
+        synchronized (getIndex()) {
+            storedAt = getIndex().get(key);
+        }
+
+        if(storedAt != null && !isExpired(storedAt)) {
+            try {
+                ShopOffer offer = getMapper().readValue(getFile(key), ShopOffer.class);
+                getHits().incrementAndGet();
+                return offer;
+            } catch (IOException e) {
+                log.warn("Could not read stored offer {} of shop {}: {}", offerKey, shopId, e.getMessage());
+            }
+        }
+
+        if(storedAt != null) {
+            remove(key);
+        }
+        getMisses().incrementAndGet();
+        return null;
+    }
+
+    /**
+     * This method stores an offer locally. If the store exceeds its maximum size, the least recently used offer is
+     * removed.
+     * @param shopId ID of the shop the offer belongs to
+     * @param offerKey Key of the offer
+     * @param offer Offer that should be stored
+     */
+    public void put(long shopId, String offerKey, ShopOffer offer) {
+        if(!isEnabled() || offerKey == null || offer == null) {
+            return;
+        }
+
+        String key = getKey(shopId, offerKey);
+        File file = getFile(key);
+        try {
+            file.getParentFile().mkdirs();
+            File temporaryFile = File.createTempFile("offer", ".tmp", file.getParentFile());
+            getMapper().writeValue(temporaryFile, offer);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not store offer {} of shop {}: {}", offerKey, shopId, e.getMessage());
+            return;
+        }
+
+        synchronized (getIndex()) {
+            getIndex().put(key, file.lastModified());
+        }
+    }
+
+    public String getStatistics() {
+        long hitCount = getHits().get();
+        long missCount = getMisses().get();
+        int size;
+        synchronized (getIndex()) {
+            size = getIndex().size();
+        }
+        double hitRate = (hitCount + missCount == 0) ? 0 : (double) hitCount / (hitCount + missCount);
+        return String.format("%d hits, %d misses (hit rate %.3f), %d stored offers", hitCount, missCount, hitRate, size);
+    }
+
+    private void loadIndex() {
+        File[] shopDirectories = getDirectory().listFiles(File::isDirectory);
+        if(shopDirectories == null) {
+            return;
+        }
+
+        // every file is only asked once for its modification time, sorting would otherwise ask for it on every comparison
+        List<Map.Entry<File, Long>> files = new ArrayList<>();
+        for(File shopDirectory : shopDirectories) {
+            File[] shopFiles = shopDirectory.listFiles((dir, name) -> name.endsWith(FILE_EXTENSION));
+            if(shopFiles != null) {
+                for(File file : shopFiles) {
+                    files.add(new AbstractMap.SimpleImmutableEntry<>(file, file.lastModified()));
+                }
+            }
+        }
+        files.sort(Map.Entry.comparingByValue());
+
+        synchronized (getIndex()) {
+            for(Map.Entry<File, Long> entry : files) {
+                File file = entry.getKey();
+                String name = file.getName();
+                String key = file.getParentFile().getName() + "/" + name.substring(0, name.length() - FILE_EXTENSION.length());
+                if(isExpired(entry.getValue())) {
+                    file.delete();
+                } else {
+                    getIndex().put(key, entry.getValue());
+                }
+            }
+        }
+        log.info("Loaded local offer store with {} offers", getIndex().size());
+    }
+
+    private void remove(String key) {
+        synchronized (getIndex()) {
+            getIndex().remove(key);
+        }
+        deleteFile(key);
+    }
+
+    private void deleteFile(String key) {
+        getFile(key).delete();
+    }
+
+    private boolean isEnabled() {
+        return getProperties().isLocalStoreEnabled();
+    }
+
+    private boolean isExpired(long storedAt) {
+        return System.currentTimeMillis() - storedAt > TimeUnit.HOURS.toMillis(getProperties().getLocalStoreTimeToLiveHours());
+    }
+
+    private File getFile(String key) {
+        return new File(getDirectory(), key + FILE_EXTENSION);
+    }
+
+    private static String getKey(long shopId, String offerKey) {
+        return shopId + "/" + Base64.getUrlEncoder().withoutPadding().encodeToString(offerKey.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,17 +1,28 @@
 package de.hpi.modelgenerator.persistence.repo;
 
+import com.mongodb.client.MongoCursor;
+import de.hpi.modelgenerator.persistence.ClassifiedBrand;
 import de.hpi.modelgenerator.persistence.MatchingResult;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
 import lombok.Getter;
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
-import javax.swing.table.TableRowSorter;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 import static org.springframework.data.mongodb.core.query.Query.query;
@@ -20,15 +31,75 @@ import static org.springframework.data.mongodb.core.query.Query.query;
 @Getter
 public class MatchingResultRepository {
 
+    private static final String[] TRAINING_FIELDS = {
+            "offerKey",
+            "shopId",
+            "higherLevelIdealoCategory",
+            "parsedData._id",
+            "parsedData.title",
+            "parsedData.description",
+            "parsedData.price",
+            "parsedData.brandName",
+            "parsedData.category",
+            "parsedData.imageUrl",
+            "parsedData.han",
+            "parsedData.sku",
+            "classifiedBrand"
+    };
+
     @Autowired
     @Qualifier(value = "matchingResultTemplate")
     private MongoTemplate mongoTemplate;
 
+    @Autowired
+    private ModelGeneratorProperties properties;
+
     public Set<Long> getShopIds() {
         return getMongoTemplate().getCollectionNames().stream().map(Long::valueOf).collect(Collectors.toSet());
     }
-    
-    public List<MatchingResult> getMatches(long shopId, int count) {
-        return getMongoTemplate().find(query(where("offerKey").ne(null).and("matchingReason").is("ean")).limit(count), MatchingResult.class, Long.toString(shopId));
+
+    /**
+     * This method streams all EAN matches of a shop. Only the fields used for training the classifiers are loaded and
+     * the documents are fetched in batches while the stream is consumed.
+     * The stream has to be closed after usage.
+     * @param shopId ID of the shop
+     * @return Stream of matches
+     */
+    public Stream<MatchingResult> streamMatches(long shopId) {
+        Query query = query(where("offerKey").ne(null).and("matchingReason").is("ean"));
+        for(String field : TRAINING_FIELDS) {
+            query.fields().include(field);
+        }
+
+        MongoCursor<Document> cursor = getMongoTemplate().getCollection(Long.toString(shopId))
+                .find(query.getQueryObject())
+                .projection(query.getFieldsObject())
+                .batchSize(getProperties().getCursorBatchSize())
+                .iterator();
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED), false)
+                .map(document -> getMongoTemplate().getConverter().read(MatchingResult.class, document))
+                .onClose(cursor::close);
+    }
+
+    /**
+     * This method stores the classified brands of the given matching results with one bulk update per shop.
+     * The matching results belong to the matcher, so this is only done if persisting classified brands is enabled.
+     * @param matchingResults Matching results whose brands were classified
+     * @param classifiedBrands Classified brand of every matching result at the same index
+     */
+    public void saveClassifiedBrands(List<MatchingResult> matchingResults, List<ClassifiedBrand> classifiedBrands) {
+        Map<Long, List<Integer>> indicesByShop = IntStream.range(0, matchingResults.size()).boxed()
+                .filter(index -> matchingResults.get(index).getUrl() != null && classifiedBrands.get(index) != null)
+                .collect(Collectors.groupingBy(index -> matchingResults.get(index).getShopId()));
+
+        indicesByShop.forEach((shopId, indices) -> {
+            BulkOperations operations = getMongoTemplate().bulkOps(BulkOperations.BulkMode.UNORDERED, Long.toString(shopId));
+            for(int index : indices) {
+                operations.updateOne(query(where("_id").is(matchingResults.get(index).getUrl())),
+                        Update.update("classifiedBrand", classifiedBrands.get(index)));
+            }
+            operations.execute();
+        });
     }
 }
@@ -1,6 +1,8 @@
 package de.hpi.modelgenerator.persistence.repo;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.hpi.machinelearning.persistence.ModelLeaderboard;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
 import de.hpi.machinelearning.persistence.ScoredModel;
 import de.hpi.machinelearning.persistence.SerializedParagraphVectors;
 import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
@@ -14,10 +16,15 @@ public class ModelFileRepository implements ModelRepository{
 
     @Override
     public void save(ParagraphVectors model, String type) throws IOException {
+        save(model, type, null);
+    }
+
+    @Override
+    public void save(ParagraphVectors model, String type, ParagraphVectorsTrial hyperparameters) throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         String path = System.getProperty("user.dir");
         new File(path + "/models").mkdirs();
-        SerializedParagraphVectors serializedParagraphVectors = new SerializedParagraphVectors(model, type);
+        SerializedParagraphVectors serializedParagraphVectors = new SerializedParagraphVectors(model, type, hyperparameters);
         mapper.writeValue(new File(path + "/models/" + type + ".json"), serializedParagraphVectors);
     }
 
@@ -30,12 +37,24 @@ public class ModelFileRepository implements ModelRepository{
 
     }
 
+    @Override
+    public void save(ModelLeaderboard leaderboard) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        String path = System.getProperty("user.dir");
+        new File(path + "/models").mkdirs();
+        mapper.writeValue(new File(path + "/models/leaderboard.json"), leaderboard);
+    }
+
     @Override
     public ParagraphVectors getBrandClassifier() throws IOException {
+        return getSerializedBrandClassifier().getNeuralNetwork();
+    }
+
+    @Override
+    public SerializedParagraphVectors getSerializedBrandClassifier() throws IOException {
         ObjectMapper mapper = new ObjectMapper();
         String path = System.getProperty("user.dir");
-        SerializedParagraphVectors classifier = mapper.readValue(new File(path + "/models/brand.json"), SerializedParagraphVectors.class);
-        return classifier.getNeuralNetwork();
+        return mapper.readValue(new File(path + "/models/brand.json"), SerializedParagraphVectors.class);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package de.hpi.modelgenerator.persistence.repo;
 
+import de.hpi.machinelearning.persistence.ModelLeaderboard;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
 import de.hpi.machinelearning.persistence.ScoredModel;
 import de.hpi.machinelearning.persistence.SerializedParagraphVectors;
 import lombok.AccessLevel;
@@ -29,13 +31,28 @@ public class ModelMongoRepository implements ModelRepository{
         getMongoTemplate().save(new SerializedParagraphVectors(model, type));
     }
 
+    @Override
+    public void save(ParagraphVectors model, String type, ParagraphVectorsTrial hyperparameters) throws IOException {
+        getMongoTemplate().save(new SerializedParagraphVectors(model, type, hyperparameters));
+    }
+
     @Override
     public void save(ScoredModel model) {
         getMongoTemplate().save(model);
     }
 
+    @Override
+    public void save(ModelLeaderboard leaderboard) {
+        getMongoTemplate().save(leaderboard);
+    }
+
     public ParagraphVectors getBrandClassifier() throws IOException {
-        return getMongoTemplate().findById(BRAND, SerializedParagraphVectors.class).getNeuralNetwork();
+        return getSerializedBrandClassifier().getNeuralNetwork();
+    }
+
+    @Override
+    public SerializedParagraphVectors getSerializedBrandClassifier() {
+        return getMongoTemplate().findById(BRAND, SerializedParagraphVectors.class);
     }
 
     @Override
@@ -1,6 +1,9 @@
 package de.hpi.modelgenerator.persistence.repo;
 
+import de.hpi.machinelearning.persistence.ModelLeaderboard;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
 import de.hpi.machinelearning.persistence.ScoredModel;
+import de.hpi.machinelearning.persistence.SerializedParagraphVectors;
 import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
 
 import java.io.IOException;
@@ -9,9 +12,15 @@ public interface ModelRepository {
 
      void save(ParagraphVectors model, String type) throws IOException;
 
+     void save(ParagraphVectors model, String type, ParagraphVectorsTrial hyperparameters) throws IOException;
+
      void save(ScoredModel model) throws IOException;
 
+     void save(ModelLeaderboard leaderboard) throws IOException;
+
      ParagraphVectors getBrandClassifier() throws IOException;
 
+     SerializedParagraphVectors getSerializedBrandClassifier() throws IOException;
+
      boolean brandClassifierExists();
 }
@@ -17,4 +17,12 @@ public class CacheProperties {
 
     private String uri;
     private String getOfferRoute;
+    private String getOffersRoute;
+    private int offerBatchSize = 100;
+    private int maxConcurrentRequests = 16;
+    private int maxInFlightRequestsPerShop = 4;
+    private int fetchQueueCapacity = 64;
+    private boolean localStoreEnabled = false;
+    private int localStoreMaxEntries = 1000000;
+    private long localStoreTimeToLiveHours = 168;
 }
@@ -1,5 +1,9 @@
 package de.hpi.modelgenerator.properties;
 
+import de.hpi.machinelearning.EvaluationMode;
+import de.hpi.machinelearning.ModelObjective;
+import de.hpi.machinelearning.ParagraphVectorsAlgorithm;
+import de.hpi.modelgenerator.persistence.TrainingSlotMode;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -15,9 +19,49 @@ import org.springframework.stereotype.Component;
 @Primary
 public class ModelGeneratorProperties {
 
-    private int matchesPerShop;
     private int maximumMatchesForLearning;
     private double trainingSetPercentage;
     private double labelThreshold;
+    private long randomSeed;
+    private int cursorBatchSize = 1000;
+    private int shopLoadingThreads = 4;
+    private int brandBatchSize = 1000;
+    private int brandCentroidCacheSize = 100000;
+    private boolean persistClassifiedBrands = false;
+    private int trainingThreads = 0;
+    private EvaluationMode evaluationMode = EvaluationMode.HOLDOUT;
+    private int crossValidationFolds = 5;
+    private ModelObjective selectionObjective = ModelObjective.ACCURACY;
+    private double selectionTolerance = 0.001;
+    private double minimumRowsPerSecond = 0;
+    private int throughputSampleSize = 1000;
+    private int trainingJobThreads = 1;
+    private int trainingJobQueueCapacity = 10;
+    private int retainedTrainingJobs = 100;
+    private int maxConcurrentTrainings = 2;
+    private int maxConcurrentTrainingsPerClassifier = 1;
+    private TrainingSlotMode trainingSlotMode = TrainingSlotMode.REJECT;
+    private long trainingSlotTimeoutSeconds = 3600;
+    private int categoryClassifierThreads = 0;
+    private int brandClassifierThreads = 0;
+    private long datasetMemoryBudgetMegabytes = 0;
+    private long datasetWaitTimeoutSeconds = 3600;
+    private int paragraphVectorsLayerSize = 100;
+    private int paragraphVectorsWindowSize = 5;
+    private int paragraphVectorsEpochs = 20;
+    private double paragraphVectorsLearningRate = 0.025;
+    private double paragraphVectorsMinLearningRate = 0.001;
+    private int paragraphVectorsBatchSize = 1000;
+    private int paragraphVectorsNegativeSample = 0;
+    private ParagraphVectorsAlgorithm paragraphVectorsAlgorithm = ParagraphVectorsAlgorithm.PV_DBOW;
+    private int paragraphVectorsEarlyStoppingPatience = 0;
+    private double paragraphVectorsEarlyStoppingMinDelta = 0.001;
+    private long hyperparameterSearchBudgetSeconds = 0;
+    private long paragraphVectorsSearchBudgetSeconds = 0;
+    private int hyperparameterSearchTrials = 40;
+    private boolean brandIndexEnabled = false;
+    private int brandIndexM = 16;
+    private int brandIndexEfConstruction = 100;
+    private int brandIndexEfSearch = 64;
 
 }
@@ -0,0 +1,46 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifiedBrand;
+import de.hpi.modelgenerator.persistence.MatchingResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Use of a dataset snapshot by one training. Closing the reference releases it, closing it again has no effect.
+ */
+class DatasetReference implements AutoCloseable {
+
+    private final DatasetSnapshots snapshots;
+    private final DatasetSnapshot snapshot;
+    private boolean released;
+
+    DatasetReference(DatasetSnapshots snapshots, DatasetSnapshot snapshot) {
+        this.snapshots = snapshots;
+        this.snapshot = snapshot;
+    }
+
+    long getVersion() {
+        return snapshot.getVersion();
+    }
+
+    List<MatchingResult> getTrainingSet() {
+        return snapshot.getTrainingSet();
+    }
+
+    List<MatchingResult> getTestingSet() {
+        return snapshot.getTestingSet();
+    }
+
+    Map<String, ClassifiedBrand> getClassifiedBrands(String brandClassifierVersion) {
+        return snapshot.getClassifiedBrands(brandClassifierVersion);
+    }
+
+    @Override
+    public synchronized void close() {
+        if(!released) {
+            released = true;
+            snapshots.release(snapshot);
+        }
+    }
+}
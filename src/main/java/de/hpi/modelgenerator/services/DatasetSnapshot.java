@@ -0,0 +1,81 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifiedBrand;
+import de.hpi.modelgenerator.persistence.MatchingResult;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Training and testing set of one load. Neither the lists of a snapshot nor their matching results are modified, so
+ * all trainings read the same snapshot concurrently. Derived data, such as classified brands, is kept next to the
+ * matching results, so every training that uses the snapshot can reuse it.
+ * The snapshot is kept as long as the cache of {@link DatasetSnapshots} or a training references it.
+ */
+@Getter
+class DatasetSnapshot {
+
+    private static final int BYTES_PER_MATCH = 1024;
+    private static final int BYTES_PER_CHAR = 2;
+
+    private final long version;
+    private final List<MatchingResult> trainingSet;
+    private final List<MatchingResult> testingSet;
+    private final long estimatedBytes;
+    @Getter(AccessLevel.NONE) private final Map<String, Map<String, ClassifiedBrand>> classifiedBrands = new ConcurrentHashMap<>();
+    @Getter(AccessLevel.NONE) int references;
+
+    DatasetSnapshot(long version, List<MatchingResult> trainingSet, List<MatchingResult> testingSet) {
+        this.version = version;
+        this.trainingSet = Collections.unmodifiableList(trainingSet);
+        this.testingSet = Collections.unmodifiableList(testingSet);
+        this.estimatedBytes = estimateBytes(trainingSet) + estimateBytes(testingSet);
+    }
+
+    /**
+     * This method returns the brands that were classified on this snapshot by the brand classifier with the given
+     * version, keyed by {@link #getOfferId(MatchingResult)}. Brands of other versions are dropped, because they are not
+     * used anymore once a new brand classifier was loaded.
+     * @param brandClassifierVersion Version of the loaded brand classifier
+     * @return Classified brands of the version that can be read and filled concurrently
+     */
+    Map<String, ClassifiedBrand> getClassifiedBrands(String brandClassifierVersion) {
+        if(brandClassifierVersion == null) {
+            return new ConcurrentHashMap<>();
+        }
+
+        classifiedBrands.keySet().removeIf(version -> !version.equals(brandClassifierVersion));
+        return classifiedBrands.computeIfAbsent(brandClassifierVersion, version -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * The parsed offer of a matching result is identified by its shop and offer key.
+     */
+    static String getOfferId(MatchingResult matchingResult) {
+        return (matchingResult.getOfferKey() == null) ? null : matchingResult.getShopId() + "/" + matchingResult.getOfferKey();
+    }
+
+    /**
+     * The estimate counts the title and description of the parsed offers, which make up most of a match, and a fixed
+     * amount for the remaining fields.
+     */
+    private static long estimateBytes(List<MatchingResult> matchingResults) {
+        long bytes = 0;
+        for(MatchingResult matchingResult : matchingResults) {
+            bytes += BYTES_PER_MATCH;
+            if(matchingResult.getParsedData() != null) {
+                bytes += BYTES_PER_CHAR * (length(matchingResult.getParsedData().getTitle())
+                        + length(matchingResult.getParsedData().getDescription()));
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        return (value == null) ? 0 : value.length();
+    }
+}
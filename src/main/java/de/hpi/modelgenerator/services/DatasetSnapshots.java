@@ -0,0 +1,135 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares the loaded training and testing set between trainings. The current snapshot is cached until it is evicted,
+ * every training holds a reference to the snapshot it uses. A snapshot is dropped when the cache and the last
+ * training released it, so evicting never takes data away from a running training.
+ * With a memory budget, new snapshots are not loaded while old snapshots that are still in use would exceed it. Such a
+ * load waits at most the configured timeout, a thread that still holds an old snapshot would otherwise wait for itself.
+ */
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+@RequiredArgsConstructor
+class DatasetSnapshots {
+
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final long CANCELLATION_CHECK_MILLIS = 1000;
+
+    private final ModelGeneratorProperties properties;
+    private DatasetSnapshot current;
+    private boolean loading;
+    private long nextVersion = 1;
+    private long retainedBytes;
+    private long lastEstimatedBytes;
+
+    /**
+     * This method returns a reference to the current snapshot. If there is none, the calling thread loads it while
+     * other threads wait for it. Waiting threads stop waiting when their training job is cancelled.
+     * @param loader Loads training and testing set of a new snapshot
+     * @return Reference that has to be closed when the training does not use the snapshot anymore
+     * @throws IllegalStateException when the memory budget is not freed within the timeout or the thread was interrupted
+     */
+    DatasetReference acquire(DatasetLoader loader) {
+        TrainingJob job = TrainingJob.current();
+        long timeout = TimeUnit.SECONDS.toMillis(getProperties().getDatasetWaitTimeoutSeconds());
+        long version;
+        synchronized (this) {
+            long deadline = 0;
+            while(current == null && (loading || exceedsMemoryBudget())) {
+                long waitMillis = CANCELLATION_CHECK_MILLIS;
+                if(!loading) {
+                    if(deadline == 0) {
+                        deadline = System.currentTimeMillis() + timeout;
+                        log.info("Wait until old datasets are released, {} MB of {} MB are in use.",
+                                retainedBytes / BYTES_PER_MEGABYTE, getProperties().getDatasetMemoryBudgetMegabytes());
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if(timeout > 0 && remaining <= 0) {
+                        throw new IllegalStateException("Timed out waiting for old datasets to be released.");
+                    }
+                    waitMillis = (timeout > 0) ? Math.min(remaining, waitMillis) : waitMillis;
+                }
+
+                job.checkCancelled();
+                try {
+                    wait(waitMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for the dataset.", e);
+                }
+            }
+
+            if(current != null) {
+                current.references++;
+                return new DatasetReference(this, current);
+            }
+            loading = true;
+            version = nextVersion++;
+        }
+
+        DatasetSnapshot snapshot = null;
+        try {
+            snapshot = loader.load(version);
+        } finally {
+            synchronized (this) {
+                loading = false;
+                if(snapshot != null) {
+                    // one reference of the cache and one of the caller
+                    snapshot.references = 2;
+                    current = snapshot;
+                    retainedBytes += snapshot.getEstimatedBytes();
+                    lastEstimatedBytes = snapshot.getEstimatedBytes();
+                }
+                notifyAll();
+            }
+        }
+        log.info("Loaded dataset version {} with {} training and {} testing matches (about {} MB).", version,
+                snapshot.getTrainingSet().size(), snapshot.getTestingSet().size(), snapshot.getEstimatedBytes() / BYTES_PER_MEGABYTE);
+        return new DatasetReference(this, snapshot);
+    }
+
+    /**
+     * This method removes the current snapshot from the cache. It is dropped as soon as no training uses it anymore,
+     * the next training loads a new snapshot.
+     */
+    synchronized void evict() {
+        if(current != null) {
+            DatasetSnapshot snapshot = current;
+            current = null;
+            release(snapshot);
+        }
+    }
+
+    synchronized void release(DatasetSnapshot snapshot) {
+        snapshot.references--;
+        if(snapshot.references == 0) {
+            retainedBytes -= snapshot.getEstimatedBytes();
+            log.info("Released dataset version {}.", snapshot.getVersion());
+            notifyAll();
+        }
+    }
+
+    /**
+     * The size of a new snapshot is estimated by the size of the last one.
+     */
+    private boolean exceedsMemoryBudget() {
+        long budget = getProperties().getDatasetMemoryBudgetMegabytes() * BYTES_PER_MEGABYTE;
+        return budget > 0 && retainedBytes > 0 && retainedBytes + lastEstimatedBytes > budget;
+    }
+
+    @FunctionalInterface
+    interface DatasetLoader {
+        DatasetSnapshot load(long version);
+    }
+}
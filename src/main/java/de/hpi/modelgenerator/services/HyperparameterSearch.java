@@ -0,0 +1,277 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.arbiter.optimize.api.ParameterSpace;
+import org.deeplearning4j.arbiter.optimize.parameter.continuous.ContinuousParameterSpace;
+import org.deeplearning4j.arbiter.optimize.parameter.discrete.DiscreteParameterSpace;
+import org.deeplearning4j.arbiter.optimize.parameter.integer.IntegerParameterSpace;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.text.documentiterator.LabelledDocument;
+import org.springframework.stereotype.Service;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-boxed random search over the hyperparameters of the matching models and the paragraph vectors.
+ * Trials run in parallel on the configured amount of training threads. When the budget is used up, the search returns
+ * the trials that finished so far: trials that have not started are skipped and running trials are interrupted.
+ * Paragraph vectors stop at the end of the current epoch, a Weka model is discarded once its training returned.
+ * The search returns only after all interrupted trials stopped, so they do not slow down the following steps.
+ */
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+@RequiredArgsConstructor
+class HyperparameterSearch {
+
+    private static final int MATCHING_MODEL_FAMILIES = 4;
+    private static final ParameterSpace<Integer> NUM_TREES = new IntegerParameterSpace(50, 300);
+    private static final ParameterSpace<Integer> MAX_DEPTH = new IntegerParameterSpace(0, 30);
+    private static final ParameterSpace<Integer> K = new IntegerParameterSpace(1, 25);
+    private static final ParameterSpace<Double> CONFIDENCE_FACTOR = new ContinuousParameterSpace(0.05, 0.5);
+    private static final ParameterSpace<Integer> ITERATIONS = new IntegerParameterSpace(10, 200);
+    private static final ParameterSpace<Integer> LAYER_SIZE = new DiscreteParameterSpace<>(50, 100, 200, 300);
+    private static final ParameterSpace<Integer> WINDOW_SIZE = new IntegerParameterSpace(3, 10);
+    private static final ParameterSpace<Integer> EPOCHS = new IntegerParameterSpace(5, 30);
+
+    private final ModelGeneratorProperties properties;
+    private final MatchingModels matchingModels;
+    private final NeuralNetClassifier neuralNetClassifier;
+
+    /**
+     * This method trains and evaluates matching models with randomly chosen hyperparameters. The trials take turns
+     * between random forest, kNN, J48 and AdaBoost.
+     * @param trainingSet Data set the models are trained on
+     * @param testingSet Held-out data set for evaluating the models
+     * @return Models of all trials that were run within the budget, including failed ones
+     */
+    List<LabeledModel> searchMatchingModels(Instances trainingSet, Instances testingSet) {
+        Random random = new Random(getProperties().getRandomSeed());
+        List<Callable<LabeledModel>> trials = new ArrayList<>();
+        for(int trial = 0; trial < getProperties().getHyperparameterSearchTrials(); trial++) {
+            Callable<LabeledModel> training = sampleMatchingModel(trial % MATCHING_MODEL_FAMILIES, random, trainingSet);
+            trials.add(() -> {
+                LabeledModel model = training.call();
+                checkInterrupted();
+                return evaluate(model, trainingSet, testingSet);
+            });
+        }
+
+        List<LabeledModel> models = runTrials(trials, getProperties().getHyperparameterSearchBudgetSeconds());
+        log.info("Finished hyperparameter search for matching models with {} of {} trials.", models.size(), trials.size());
+        return models;
+    }
+
+    /**
+     * This method trains paragraph vectors with randomly chosen layer size, window size and epochs and keeps the
+     * network that labels most documents of the testing set correctly. The workers are shared by the trials that run
+     * at the same time.
+     * @param trainingSet Labelled documents for training
+     * @param testingSet Labelled documents for evaluating the networks
+     * @param workers Amount of threads used for training the networks
+     * @return Hyperparameters, measured cost and network of the best trial or null, if no trial finished within the
+     * budget
+     */
+    ParagraphVectorsTrial searchParagraphVectors(List<LabelledDocument> trainingSet, List<LabelledDocument> testingSet,
+                                            int workers) {
+        Random random = new Random(getProperties().getRandomSeed());
+        int trialWorkers = Math.max(1, workers / getParallelism(getProperties().getHyperparameterSearchTrials()));
+        BestParagraphVectors best = new BestParagraphVectors();
+        List<Callable<ParagraphVectorsTrial>> trials = new ArrayList<>();
+        for(int trial = 0; trial < getProperties().getHyperparameterSearchTrials(); trial++) {
+            int layerSize = sample(LAYER_SIZE, random);
+            int windowSize = sample(WINDOW_SIZE, random);
+            int epochs = sample(EPOCHS, random);
+            trials.add(() -> trainParagraphVectors(trainingSet, testingSet, layerSize, windowSize, epochs, trialWorkers, best));
+        }
+
+        List<ParagraphVectorsTrial> results = runTrials(trials, getProperties().getParagraphVectorsSearchBudgetSeconds());
+        ParagraphVectorsTrial bestTrial = best.get();
+        for(ParagraphVectorsTrial result : results) {
+            log.info("Paragraph vectors {}{}", result, (result == bestTrial) ? " (best)" : "");
+        }
+        return bestTrial;
+    }
+
+    private Callable<LabeledModel> sampleMatchingModel(int family, Random random, Instances trainingSet) {
+        switch(family) {
+            case 0:
+                int numTrees = sample(NUM_TREES, random);
+                int maxDepth = sample(MAX_DEPTH, random);
+                return () -> getMatchingModels().getRandomForest(trainingSet, numTrees, maxDepth);
+            case 1:
+                int k = sample(K, random);
+                return () -> getMatchingModels().getKNN(trainingSet, k);
+            case 2:
+                float confidenceFactor = sample(CONFIDENCE_FACTOR, random).floatValue();
+                return () -> getMatchingModels().getJ48(trainingSet, confidenceFactor);
+            default:
+                int iterations = sample(ITERATIONS, random);
+                return () -> getMatchingModels().getAdaBoost(trainingSet, iterations);
+        }
+    }
+
+    private LabeledModel evaluate(LabeledModel model, Instances trainingSet, Instances testingSet) {
+        if(model.isFailed()) {
+            return model;
+        }
+
+        try {
+            model.setEvaluation(getMatchingModels().evaluate(model, trainingSet, testingSet));
+            log.info("Evaluated model {} ({}): {}", model.getModelType(), model.getConfiguration(), model.getEvaluation());
+        } catch (Exception e) {
+            log.error("Could not evaluate model {} ({}): {}", model.getModelType(), model.getConfiguration(), e.getMessage(), e);
+            model.setFailure(e);
+        }
+        return model;
+    }
+
+    private ParagraphVectorsTrial trainParagraphVectors(List<LabelledDocument> trainingSet, List<LabelledDocument> testingSet,
+                                                        int layerSize, int windowSize, int epochs, int workers,
+                                                        BestParagraphVectors best) {
+        ParagraphVectorsTrial trial = new ParagraphVectorsTrial(layerSize, windowSize, epochs);
+        long start = System.currentTimeMillis();
+        ParagraphVectors paragraphVectors = getNeuralNetClassifier().getParagraphVectors(trainingSet, testingSet, layerSize,
+                windowSize, epochs, workers);
+        trial.setTrainingMillis(System.currentTimeMillis() - start);
+        checkInterrupted();
+
+        long evaluationStart = System.nanoTime();
+        trial.setAccuracy(getNeuralNetClassifier().checkUnlabeledData(paragraphVectors, testingSet));
+        trial.setNanosPerDocument(testingSet.isEmpty() ? 0 : (double) (System.nanoTime() - evaluationStart) / testingSet.size());
+
+        if(!best.offer(trial, paragraphVectors)) {
+            throw new CancellationException("Hyperparameter trial was interrupted.");
+        }
+        return trial;
+    }
+
+    /**
+     * This method runs the trials until the budget is used up. Trials that did not finish within the budget are
+     * cancelled.
+     * @param trials Trials in the order they are started
+     * @param budgetSeconds Wall-clock budget of the search
+     * @return Results of the trials that finished within the budget in the order of the trials
+     */
+    private <T> List<T> runTrials(List<Callable<T>> trials, long budgetSeconds) {
+        ExecutorService executor = Executors.newFixedThreadPool(getParallelism(trials.size()));
+        List<T> results = new ArrayList<>(trials.size());
+        try {
+            for(Future<T> future : executor.invokeAll(trials, budgetSeconds, TimeUnit.SECONDS)) {
+                try {
+                    T result = future.get();
+                    if(result != null) {
+                        results.add(result);
+                    }
+                } catch (CancellationException e) {
+                    log.info("Hyperparameter trial did not finish within the budget of {} s.", budgetSeconds);
+                } catch (ExecutionException e) {
+                    log.error("Hyperparameter trial failed: {}", e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+            awaitTrials(executor, results.size() < trials.size());
+        }
+        return results;
+    }
+
+    /**
+     * Weka does not react to interrupts, so a cancelled trial keeps running until its training returned. The search
+     * waits for these trials, otherwise they would compete with the throughput measurement and the next training.
+     */
+    private static void awaitTrials(ExecutorService executor, boolean cancelled) {
+        long start = System.currentTimeMillis();
+        boolean interrupted = false;
+        boolean terminated = false;
+        while(!terminated) {
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+                if(!terminated) {
+                    log.info("Waiting for the cancelled hyperparameter trials to stop.");
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if(cancelled) {
+            log.info("Cancelled hyperparameter trials stopped {} ms after the budget was used up.",
+                    System.currentTimeMillis() - start);
+        }
+        if(interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int getParallelism(int trials) {
+        return Math.max(1, Math.min(trials, getMatchingModels().getTrainingThreads()));
+    }
+
+    /**
+     * Trials are interrupted when the budget is used up. Weka does not react to interrupts, so the trials check
+     * for them between their steps.
+     */
+    private static void checkInterrupted() {
+        if(Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Hyperparameter trial was interrupted.");
+        }
+    }
+
+    /**
+     * Arbiter maps values in [0, 1] to the parameter space. Leaf spaces read the value at their index.
+     */
+    private static <T> T sample(ParameterSpace<T> space, Random random) {
+        synchronized (space) {
+            space.setIndices(0);
+            return space.getValue(new double[]{random.nextDouble()});
+        }
+    }
+
+    /**
+     * Keeps only the network of the best trial, so trials do not hold on to worse networks until the search ends.
+     */
+    private static class BestParagraphVectors {
+
+        private ParagraphVectorsTrial trial;
+
+        /**
+         * A trial that was interrupted did not finish within the budget, so its network is rejected.
+         * @return false if the candidate was rejected because its trial was interrupted
+         */
+        private synchronized boolean offer(ParagraphVectorsTrial candidate, ParagraphVectors candidateVectors) {
+            if(Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if(trial == null || candidate.getAccuracy() > trial.getAccuracy()) {
+                if(trial != null) {
+                    trial.setParagraphVectors(null);
+                }
+                candidate.setParagraphVectors(candidateVectors);
+                trial = candidate;
+            }
+            return true;
+        }
+
+        private synchronized ParagraphVectorsTrial get() {
+            return trial;
+        }
+    }
+}
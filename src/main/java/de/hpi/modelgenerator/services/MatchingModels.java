@@ -1,14 +1,24 @@
 package de.hpi.modelgenerator.services;
 
 
+import de.hpi.machinelearning.EvaluationMode;
+import de.hpi.machinelearning.ModelEvaluation;
+import de.hpi.machinelearning.persistence.AttributeVector;
 import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
+import weka.classifiers.ParallelIteratedSingleClassifierEnhancer;
+import weka.classifiers.evaluation.Prediction;
 import weka.classifiers.bayes.NaiveBayes;
 import weka.classifiers.functions.LinearRegression;
 import weka.classifiers.functions.Logistic;
@@ -17,11 +27,24 @@ import weka.classifiers.meta.AdaBoostM1;
 import weka.classifiers.trees.J48;
 import weka.classifiers.trees.RandomForest;
 import weka.core.Instances;
+import weka.core.OptionHandler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @Getter(AccessLevel.PRIVATE)
 @Setter(AccessLevel.PRIVATE)
 @Slf4j
+@RequiredArgsConstructor
 class MatchingModels {
 
     private static final String NAIVE_BAYES = "naiveBayes";
@@ -32,93 +55,263 @@ class MatchingModels {
     private static final String J48 = "j48";
     private static final String ADA_BOOST = "adaBoost";
 
-    LabeledModel getNaiveBayes(Instances trainingSet) {
-        Classifier cModel = new NaiveBayes();
-        try {
-            cModel.buildClassifier(trainingSet);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    private static final int WARM_UP_ROWS = 100;
+    private static final long MINIMUM_BENCHMARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final long MAXIMUM_BENCHMARK_NANOS = TimeUnit.SECONDS.toNanos(2);
 
-        return new LabeledModel(cModel, NAIVE_BAYES);
+    private final ModelGeneratorProperties properties;
+    private volatile double benchmarkChecksum;
+    private ExecutorService foldExecutor;
+
+    LabeledModel getNaiveBayes(Instances trainingSet) {
+        return buildModel(new NaiveBayes(), NAIVE_BAYES, trainingSet);
     }
 
     LabeledModel getLogistic(Instances trainingSet) {
-        Classifier cModel = new Logistic();
-        try {
-            cModel.buildClassifier(trainingSet);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        return buildModel(new Logistic(), LOGISTIC, trainingSet);
+    }
 
-        return new LabeledModel(cModel, LOGISTIC);
+    /**
+     * This method trains a random forest with the default hyperparameters. The trees are built on the training threads
+     * that are left by the models trained at the same time, so the forest does not oversubscribe the processors.
+     * @param trainingSet Data set for training
+     * @param concurrentModels Amount of other models that are trained at the same time
+     * @return Trained model
+     */
+    LabeledModel getRandomForest(Instances trainingSet, int concurrentModels) {
+        RandomForest cModel = new RandomForest();
+        cModel.setNumExecutionSlots(Math.max(1, getTrainingThreads() - concurrentModels));
+        return buildModel(cModel, RANDOM_FOREST, trainingSet);
     }
 
-    LabeledModel getRandomForest(Instances trainingSet) {
-        Classifier cModel = new RandomForest();
-        try {
-            cModel.buildClassifier(trainingSet);
-        } catch (Exception e) {
-            e.printStackTrace();
+    LabeledModel getKNN(Instances trainingSet) {
+        return buildModel(new IBk(), K_NN, trainingSet);
+    }
+
+    public LabeledModel getLinearRegression(Instances trainingSet) {
+        return buildModel(new LinearRegression(), LINEAR_REGRESSION, trainingSet);
+    }
+
+    LabeledModel getJ48(Instances trainingSet) {
+        return buildModel(new J48(), J48, trainingSet);
+    }
+
+    LabeledModel getAdaBoost(Instances trainingSet) {
+        return buildModel(new AdaBoostM1(), ADA_BOOST, trainingSet);
+    }
+
+    /**
+     * This method trains a random forest with the given hyperparameters. The forest is built by one thread, since
+     * hyperparameter search trains multiple models in parallel.
+     * @param trainingSet Data set for training
+     * @param numTrees Amount of trees
+     * @param maxDepth Maximum depth of the trees (0 for unlimited depth)
+     * @return Trained model
+     */
+    LabeledModel getRandomForest(Instances trainingSet, int numTrees, int maxDepth) {
+        RandomForest cModel = new RandomForest();
+        cModel.setNumIterations(numTrees);
+        cModel.setMaxDepth(maxDepth);
+        cModel.setNumExecutionSlots(1);
+        return buildModel(cModel, RANDOM_FOREST, String.format("numTrees=%d, maxDepth=%d", numTrees, maxDepth), trainingSet);
+    }
+
+    LabeledModel getKNN(Instances trainingSet, int k) {
+        IBk cModel = new IBk();
+        cModel.setKNN(k);
+        return buildModel(cModel, K_NN, String.format("k=%d", k), trainingSet);
+    }
+
+    LabeledModel getJ48(Instances trainingSet, float confidenceFactor) {
+        J48 cModel = new J48();
+        cModel.setConfidenceFactor(confidenceFactor);
+        return buildModel(cModel, J48, String.format(Locale.ROOT, "confidenceFactor=%.3f", confidenceFactor), trainingSet);
+    }
+
+    LabeledModel getAdaBoost(Instances trainingSet, int iterations) {
+        AdaBoostM1 cModel = new AdaBoostM1();
+        cModel.setNumIterations(iterations);
+        return buildModel(cModel, ADA_BOOST, String.format("iterations=%d", iterations), trainingSet);
+    }
+
+    /**
+     * This method evaluates a trained model on instances that were not used for training. Depending on the configured
+     * evaluation mode, the model is evaluated on the testing set or with k-fold cross-validation on the training set.
+     * The folds of all models share one pool of training threads, so evaluating several models at the same time does
+     * not start more fold trainings than there are training threads.
+     * @param model Trained model
+     * @param trainingSet Data set the model was trained on
+     * @param testingSet Held-out data set
+     * @return Metrics of the model
+     * @throws Exception when the model cannot be evaluated
+     */
+    ModelEvaluation evaluate(LabeledModel model, Instances trainingSet, Instances testingSet) throws Exception {
+        int positiveClassIndex = trainingSet.classAttribute().indexOfValue(AttributeVector.TRUE);
+        if(getProperties().getEvaluationMode() != EvaluationMode.CROSS_VALIDATION) {
+            long start = System.nanoTime();
+            List<Prediction> predictions = predict(model.getModel(), trainingSet, testingSet);
+            return ModelEvaluation.fromPredictions(predictions, positiveClassIndex, System.nanoTime() - start);
         }
 
-        return new LabeledModel(cModel, RANDOM_FOREST);
+        int folds = Math.max(2, getProperties().getCrossValidationFolds());
+        Instances data = new Instances(trainingSet);
+        data.randomize(new Random(getProperties().getRandomSeed()));
+        data.stratify(folds);
+
+        List<Future<FoldResult>> futures = new ArrayList<>();
+        try {
+            for(int fold = 0; fold < folds; fold++) {
+                int currentFold = fold;
+                futures.add(getFoldExecutor().submit(() -> evaluateFold(model.getModel(), data, folds, currentFold)));
+            }
+
+            List<Prediction> predictions = new ArrayList<>();
+            long evaluationNanos = 0;
+            for(Future<FoldResult> future : futures) {
+                FoldResult result = future.get();
+                predictions.addAll(result.predictions);
+                evaluationNanos += result.evaluationNanos;
+            }
+            return ModelEvaluation.fromPredictions(predictions, positiveClassIndex, evaluationNanos);
+        } finally {
+            for(Future<FoldResult> future : futures) {
+                future.cancel(true);
+            }
+        }
     }
 
-    LabeledModel getKNN(Instances trainingSet) {
-        Classifier cModel = new IBk();
+    /**
+     * This method measures how many rows a trained model classifies per second on one thread, as the matcher does
+     * when scoring offer pairs. After warming up, the rows of the sample are classified for at least 200 ms and until
+     * the sample was classified once or 2 s have passed.
+     * @param model Trained model
+     * @param sample Held-out rows
+     * @return Rows per second or 0, if the model cannot classify the rows
+     */
+    double measureThroughput(LabeledModel model, Instances sample) {
+        if(sample.isEmpty()) {
+            return 0;
+        }
+
+        Classifier cModel = model.getModel();
+        double checksum = 0;
         try {
-            cModel.buildClassifier(trainingSet);
+            for(int row = 0; row < Math.min(WARM_UP_ROWS, sample.size()); row++) {
+                checksum += cModel.distributionForInstance(sample.instance(row))[0];
+            }
+
+            long rows = 0;
+            long elapsed;
+            long start = System.nanoTime();
+            do {
+                checksum += cModel.distributionForInstance(sample.instance((int) (rows % sample.size())))[0];
+                rows++;
+                elapsed = System.nanoTime() - start;
+            } while(elapsed < MINIMUM_BENCHMARK_NANOS || (rows < sample.size() && elapsed < MAXIMUM_BENCHMARK_NANOS));
+
+            setBenchmarkChecksum(checksum);
+            return rows * 1e9 / elapsed;
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Could not measure throughput of model {}: {}", model.getModelType(), e.getMessage(), e);
+            return 0;
         }
+    }
 
-        return new LabeledModel(cModel, K_NN);
+    /**
+     * This method returns the amount of threads for training models.
+     * @return Configured amount of threads or the amount of available processors, if none is configured
+     */
+    int getTrainingThreads() {
+        int threads = getProperties().getTrainingThreads();
+        return (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
     }
 
-    public LabeledModel getLinearRegression(Instances trainingSet) {
-        Classifier cModel = new LinearRegression();
-        try {
-            cModel.buildClassifier(trainingSet);
-        } catch (Exception e) {
-            e.printStackTrace();
+    @PreDestroy
+    public synchronized void shutdown() {
+        if(foldExecutor != null) {
+            foldExecutor.shutdownNow();
         }
+    }
 
-        return new LabeledModel(cModel, LINEAR_REGRESSION);
+    private synchronized ExecutorService getFoldExecutor() {
+        if(foldExecutor == null) {
+            foldExecutor = Executors.newFixedThreadPool(getTrainingThreads());
+        }
+        return foldExecutor;
     }
 
-    LabeledModel getJ48(Instances trainingSet) {
-        Classifier cModel = new J48();
+    private LabeledModel buildModel(Classifier cModel, String modelType, Instances trainingSet) {
+        return buildModel(cModel, modelType, "default", trainingSet);
+    }
+
+    /**
+     * This method trains a model and logs its training time and the memory allocated by the training thread.
+     * The training set is only read, so multiple models can be trained on it concurrently.
+     * @param cModel Untrained model
+     * @param modelType Type of the model
+     * @param configuration Description of the hyperparameters of the model
+     * @param trainingSet Data set for training
+     * @return Trained model or a model that is marked as failed
+     */
+    private LabeledModel buildModel(Classifier cModel, String modelType, String configuration, Instances trainingSet) {
+        LabeledModel model = new LabeledModel(cModel, modelType);
+        model.setConfiguration(configuration);
+        long start = System.currentTimeMillis();
+        long allocatedBytes = getAllocatedBytes();
         try {
             cModel.buildClassifier(trainingSet);
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("Could not train model {}: {}", modelType, e.getMessage(), e);
+            model.setFailure(e);
         }
 
-        return new LabeledModel(cModel, J48);
+        model.setTrainingMillis(System.currentTimeMillis() - start);
+        long allocatedMegabytes = (getAllocatedBytes() - allocatedBytes) / (1024 * 1024);
+        long usedHeapMegabytes = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+        log.info("Trained model {} ({}) in {} ms ({} MB allocated, {} MB heap used afterwards{})", modelType,
+                configuration, model.getTrainingMillis(), allocatedMegabytes, usedHeapMegabytes, model.isFailed() ? ", failed" : "");
+        return model;
     }
 
-    LabeledModel getAdaBoost(Instances trainingSet) {
-        Classifier cModel = new AdaBoostM1();
-        try {
-            cModel.buildClassifier(trainingSet);
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * The fold runs on a thread of the fold pool, so the copy of the model is built by that thread only.
+     */
+    private FoldResult evaluateFold(Classifier template, Instances data, int folds, int fold) throws Exception {
+        Instances foldTrainingSet = data.trainCV(folds, fold);
+        Instances foldTestingSet = data.testCV(folds, fold);
+        Classifier cModel = AbstractClassifier.forName(template.getClass().getName(), ((OptionHandler) template).getOptions());
+        if(cModel instanceof ParallelIteratedSingleClassifierEnhancer) {
+            ((ParallelIteratedSingleClassifierEnhancer) cModel).setNumExecutionSlots(1);
         }
+        cModel.buildClassifier(foldTrainingSet);
 
-        return new LabeledModel(cModel, ADA_BOOST);
+        long start = System.nanoTime();
+        List<Prediction> predictions = predict(cModel, foldTrainingSet, foldTestingSet);
+        return new FoldResult(predictions, System.nanoTime() - start);
     }
 
-    double getClassificationError(Classifier cModel, Instances trainingSet) {
-        try {
-            Evaluation eTest = new Evaluation(trainingSet);
-            eTest.evaluateModel(cModel, trainingSet);
-            return eTest.errorRate();
+    private static List<Prediction> predict(Classifier cModel, Instances trainingSet, Instances testingSet) throws Exception {
+        Evaluation evaluation = new Evaluation(trainingSet);
+        evaluation.evaluateModel(cModel, testingSet);
+        return evaluation.predictions();
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+    private static long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if(threadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
         }
+        return 0;
+    }
+
+    private static class FoldResult {
 
-        return 1d;
+        private final List<Prediction> predictions;
+        private final long evaluationNanos;
+
+        private FoldResult(List<Prediction> predictions, long evaluationNanos) {
+            this.predictions = predictions;
+            this.evaluationNanos = evaluationNanos;
+        }
     }
 }
@@ -1,12 +1,18 @@
 package de.hpi.modelgenerator.services;
 
-import de.hpi.machinelearning.persistence.AttributeVector;
-import de.hpi.machinelearning.persistence.FeatureInstance;
+import de.hpi.machinelearning.IndexSampler;
+import de.hpi.machinelearning.StratifiedReservoirSampler;
+import de.hpi.machinelearning.persistence.FeatureMatrix;
 import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.machinelearning.persistence.LeaderboardEntry;
+import de.hpi.machinelearning.persistence.ModelLeaderboard;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
+import de.hpi.modelgenerator.persistence.ClassifiedBrand;
 import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
 import de.hpi.modelgenerator.persistence.MatchingResult;
 import de.hpi.modelgenerator.persistence.ShopOffer;
-import de.hpi.modelgenerator.persistence.repo.Cache;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingPhase;
 import de.hpi.modelgenerator.persistence.repo.MatchingResultRepository;
 import de.hpi.modelgenerator.persistence.repo.ModelFileRepository;
 import de.hpi.modelgenerator.persistence.repo.ModelMongoRepository;
@@ -20,16 +26,17 @@ import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
 import org.deeplearning4j.text.documentiterator.LabelledDocument;
 import org.nd4j.linalg.primitives.Pair;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpClientErrorException;
-import weka.core.Attribute;
-import weka.core.Instance;
 import weka.core.Instances;
 
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -44,165 +51,358 @@ public class ModelGeneratorService {
     private final ModelMongoRepository modelRepository;
     private final ModelGeneratorProperties properties;
     private final MatchingResultRepository matchingResultRepository;
-    private final Cache cache;
+    private final OfferFetchPipeline offerFetchPipeline;
     private final NeuralNetClassifier neuralNetClassifier;
     private final MatchingModels matchingModels;
     private final ProbabilityClassifier classifier;
-
-    private List<MatchingResult> trainingSet;
-    private List<MatchingResult> testingSet;
+    private final HyperparameterSearch hyperparameterSearch;
+    private final TrainingSlots trainingSlots;
+    private final DatasetSnapshots datasets;
 
     /**
      * This method generates and saves a neural network for labelling the category of an offer.
-     * If necessary, the training set will be created.
-     * @param state Mutex to avoid multiple generation of classifier
+     * If necessary, the training set will be created. The training uses the current dataset snapshot until it finished.
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
      * @throws IOException when classifier cannot be serialized
+     * @throws IllegalStateException when no training slot is free
      */
     public void generateCategoryClassifier(ClassifierTrainingState state) throws IOException {
-        if(state.isCurrentlyLearning()) {
-            return;
+        try(TrainingSlot slot = getTrainingSlots().acquire(state); DatasetReference dataset = getDataset()) {
+            trainCategoryClassifier(dataset);
         }
+    }
 
-        state.setCurrentlyLearning(true);
-        setTrainingAndTestingSet();
-        List<LabelledDocument> trainingSet = getLabelledDocumentsByCategory(getTrainingSet());
-        List<LabelledDocument> testingSet = getLabelledDocumentsByCategory(getTestingSet());
+    /**
+     * This method generates and saves the category classifier on a dataset snapshot the caller holds.
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
+     * @param dataset Snapshot the classifier is trained on, it stays open
+     * @throws IOException when classifier cannot be serialized
+     * @throws IllegalStateException when no training slot is free
+     */
+    void generateCategoryClassifier(ClassifierTrainingState state, DatasetReference dataset) throws IOException {
+        try(TrainingSlot slot = getTrainingSlots().acquire(state)) {
+            trainCategoryClassifier(dataset);
+        }
+    }
+
+    private void trainCategoryClassifier(DatasetReference dataset) throws IOException {
+        List<LabelledDocument> trainingSet = getLabelledDocumentsByCategory(dataset.getTrainingSet());
+        List<LabelledDocument> testingSet = getLabelledDocumentsByCategory(dataset.getTestingSet());
 
         log.info("Start generating category classifier at {} ", new Date());
         log.info("Use {} documents for training.", trainingSet.size());
         log.info("Use {} documents for validation.", testingSet.size());
 
-        ParagraphVectors paragraphVectors = getNeuralNetClassifier().getParagraphVectors(trainingSet);
-        state.setCurrentlyLearning(false);
-        getModelRepository().save(paragraphVectors, CATEGORY);
+        saveParagraphVectors(trainingSet, testingSet, getWorkers(getProperties().getCategoryClassifierThreads()), CATEGORY);
         log.info("Successfully generated category classifier.");
     }
 
     /**
      * This method generates and saves a neural network for labelling the brand of an offer.
-     * If necessary, the training set will be created.
-     * @param state Mutex to avoid multiple generation of classifier
+     * If necessary, the training set will be created. The training uses the current dataset snapshot until it finished.
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
      * @throws IOException when classifier cannot be serialized
+     * @throws IllegalStateException when no training slot is free
      */
     public void generateBrandClassifier(ClassifierTrainingState state) throws IOException {
-        if(state.isCurrentlyLearning()) {
-            return;
+        try(TrainingSlot slot = getTrainingSlots().acquire(state); DatasetReference dataset = getDataset()) {
+            trainBrandClassifier(dataset);
         }
+    }
 
-        state.setCurrentlyLearning(true);
-        setTrainingAndTestingSet();
-        List<LabelledDocument> trainingSet = getLabelledDocumentsByBrand(getTrainingSet());
-        List<LabelledDocument> testingSet = getLabelledDocumentsByBrand(getTestingSet());
+    /**
+     * This method generates and saves the brand classifier on a dataset snapshot the caller holds.
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
+     * @param dataset Snapshot the classifier is trained on, it stays open
+     * @throws IOException when classifier cannot be serialized
+     * @throws IllegalStateException when no training slot is free
+     */
+    void generateBrandClassifier(ClassifierTrainingState state, DatasetReference dataset) throws IOException {
+        try(TrainingSlot slot = getTrainingSlots().acquire(state)) {
+            trainBrandClassifier(dataset);
+        }
+    }
+
+    private void trainBrandClassifier(DatasetReference dataset) throws IOException {
+        List<LabelledDocument> trainingSet = getLabelledDocumentsByBrand(dataset.getTrainingSet());
+        List<LabelledDocument> testingSet = getLabelledDocumentsByBrand(dataset.getTestingSet());
 
         log.info("Start generating brand classifier at {} ", new Date());
         log.info("Use {} documents for training.", trainingSet.size());
         log.info("Use {} documents for validation.", testingSet.size());
 
-        ParagraphVectors paragraphVectors = getNeuralNetClassifier().getParagraphVectors(trainingSet);
-        state.setCurrentlyLearning(false);
-        getModelRepository().save(paragraphVectors, BRAND);
+        saveParagraphVectors(trainingSet, testingSet, getWorkers(getProperties().getBrandClassifierThreads()), BRAND);
         log.info("Successfully generated brand classifier.");
     }
 
     /**
      * This method generates and saves a model for classifying whether two offers match or not.
-     * Multiple classifiers will be trained and the best one (lowest classification error) is chosen.
+     * Multiple classifiers will be trained and evaluated on held-out data, the best one regarding the configured
+     * objective is chosen. The leaderboard of all candidates is saved along with the chosen model.
      * If necessary, the training and testing sets set will be created.
      * This method needs the brand classifier to be generated first, since it is necessary for a feature.
-     * @param state Mutex to avoid multiple generation of classifier
-     * @throws IllegalStateException when brand classifier is not present
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
+     * @throws IllegalStateException when brand classifier is not present or no training slot is free
      * @throws IOException when brand classifier cannot be deserialized
      */
     public void generateModel(ClassifierTrainingState state) throws IllegalStateException, IOException {
-        if(state.isCurrentlyLearning()) {
-            return;
+        try(TrainingSlot slot = getTrainingSlots().acquire(state)) {
+            loadBrandClassifier();
+            try(DatasetReference dataset = getDataset()) {
+                trainModel(dataset);
+            }
         }
+    }
 
+    /**
+     * This method generates and saves the model on a dataset snapshot the caller holds.
+     * @param state Running trainings of the classifier, the amount is limited by the training slots
+     * @param dataset Snapshot the model is trained on, it stays open
+     * @throws IllegalStateException when brand classifier is not present or no training slot is free
+     * @throws IOException when brand classifier cannot be deserialized
+     */
+    void generateModel(ClassifierTrainingState state, DatasetReference dataset) throws IllegalStateException, IOException {
+        try(TrainingSlot slot = getTrainingSlots().acquire(state)) {
+            loadBrandClassifier();
+            trainModel(dataset);
+        }
+    }
+
+    private void loadBrandClassifier() throws IOException {
         if(!getModelRepository().brandClassifierExists()) {
             throw new IllegalStateException("Brand classifier needs to be generated first.");
         }
-
         getClassifier().loadBrandClassifier();
-        state.setCurrentlyLearning(true);
-        setTrainingAndTestingSet();
+    }
+
+    private void trainModel(DatasetReference dataset) throws IOException {
+        TrainingJob job = TrainingJob.current();
         log.info("Start generating training and testing set for model at {}", new Date());
-        Instances trainingSet = getInstances(getTrainingSet());
-        Instances testingSet = getInstances(getTestingSet());
+        Instances trainingSet = getInstances(dataset, dataset.getTrainingSet());
+        Instances testingSet = getInstances(dataset, dataset.getTestingSet());
         log.info("Finished generating training and testing set for model at {}", new Date());
-        List<LabeledModel> models = new LinkedList<>();
-        Map<Double, String> scoredModels = new HashMap<>();
 
         log.info("Start generating model at {} ", new Date());
         log.info("Use {} documents for training.", trainingSet.size());
         log.info("Use {} documents for validation.", testingSet.size());
 
-        models.add(getMatchingModels().getAdaBoost(trainingSet));
-        models.add(getMatchingModels().getNaiveBayes(trainingSet));
-        models.add(getMatchingModels().getLogistic(trainingSet));
-        models.add(getMatchingModels().getRandomForest(trainingSet));
-        models.add(getMatchingModels().getKNN(trainingSet));
-        models.add(getMatchingModels().getJ48(trainingSet));
+        List<Callable<LabeledModel>> candidates = new ArrayList<>(Arrays.asList(
+                () -> getMatchingModels().getAdaBoost(trainingSet),
+                () -> getMatchingModels().getNaiveBayes(trainingSet),
+                () -> getMatchingModels().getLogistic(trainingSet),
+                () -> getMatchingModels().getKNN(trainingSet),
+                () -> getMatchingModels().getJ48(trainingSet)));
+        // the forest builds its trees on the training threads the other candidates leave free
+        int concurrentModels = candidates.size();
+        candidates.add(3, () -> getMatchingModels().getRandomForest(trainingSet, concurrentModels));
+        job.enterPhase(TrainingPhase.TRAINING, candidates.size());
+        List<LabeledModel> models = trainModels(candidates, trainingSet, testingSet);
+        if(getProperties().getHyperparameterSearchBudgetSeconds() > 0) {
+            models.addAll(getHyperparameterSearch().searchMatchingModels(trainingSet, testingSet));
+        }
 
-        for(LabeledModel model : models) {
-            double score = getMatchingModels().getClassificationError(model.getModel(), trainingSet);
-            scoredModels.put(score, model.getModelType());
+        job.enterPhase(TrainingPhase.EVALUATING, models.size());
+        measureThroughput(models, testingSet);
+
+        ModelLeaderboard leaderboard = new ModelLeaderboard(models, getProperties().getSelectionObjective(),
+                getProperties().getSelectionTolerance(), getProperties().getMinimumRowsPerSecond());
+        log.info("{}", leaderboard);
+        LeaderboardEntry chosen = leaderboard.getChosen();
+        if(chosen == null) {
+            throw new IllegalStateException(models.stream().allMatch(LabeledModel::isFailed)
+                    ? "None of the models could be trained."
+                    : "None of the models reaches the minimum throughput.");
+        }
+        job.enterPhase(TrainingPhase.PERSISTING, 0);
+        getModelRepository().save(chosen.toScoredModel());
+        getModelRepository().save(leaderboard);
+        log.info("Successfully generated model.");
+    }
+
+    /**
+     * This method trains and saves paragraph vectors with the default hyperparameters or, if a budget is configured,
+     * searches the best hyperparameters. The hyperparameters and the measured cost of the best trial are saved along
+     * with the network.
+     * @param trainingSet Labelled documents for training
+     * @param testingSet Labelled documents for evaluating the networks of the search and for early stopping
+     * @param workers Amount of threads used for training one network
+     * @param type Type the network is saved as
+     * @throws IOException when the network cannot be serialized
+     */
+    private void saveParagraphVectors(List<LabelledDocument> trainingSet, List<LabelledDocument> testingSet, int workers,
+                                      String type) throws IOException {
+        TrainingJob.current().enterPhase(TrainingPhase.TRAINING, 0);
+        if(getProperties().getParagraphVectorsSearchBudgetSeconds() > 0) {
+            ParagraphVectorsTrial trial = getHyperparameterSearch().searchParagraphVectors(trainingSet, testingSet, workers);
+            if(trial != null) {
+                TrainingJob.current().enterPhase(TrainingPhase.PERSISTING, 0);
+                getModelRepository().save(trial.getParagraphVectors(), type, trial);
+                return;
+            }
+            log.warn("No hyperparameter trial finished, train paragraph vectors with default hyperparameters.");
+        }
+        ParagraphVectors paragraphVectors = getNeuralNetClassifier().getParagraphVectors(trainingSet, testingSet, workers);
+        TrainingJob.current().enterPhase(TrainingPhase.PERSISTING, 0);
+        getModelRepository().save(paragraphVectors, type);
+    }
+
+    /**
+     * Category and brand classifier are trained at the same time by the training pipeline, so by default each of them
+     * gets half of the available processors.
+     */
+    private int getWorkers(int configuredThreads) {
+        return (configuredThreads > 0) ? configuredThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * This method trains and evaluates the candidate models concurrently on a pool with the configured amount of
+     * training threads.
+     * @param candidates Tasks training one model each
+     * @param trainingSet Data set the candidates are trained on
+     * @param testingSet Held-out data set for evaluating the candidates
+     * @return Trained models in the order of the candidates, including models whose training or evaluation failed
+     */
+    private List<LabeledModel> trainModels(List<Callable<LabeledModel>> candidates, Instances trainingSet, Instances testingSet) {
+        List<Callable<LabeledModel>> tasks = candidates.stream()
+                .map(candidate -> (Callable<LabeledModel>) () -> evaluateModel(candidate.call(), trainingSet, testingSet))
+                .collect(Collectors.toList());
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(candidates.size(), getMatchingModels().getTrainingThreads())));
+        List<LabeledModel> models = new ArrayList<>(candidates.size());
+        TrainingJob job = TrainingJob.current();
+        try {
+            for(Future<LabeledModel> future : executor.invokeAll(tasks)) {
+                try {
+                    LabeledModel model = future.get();
+                    if(model.isFailed()) {
+                        log.warn("Model {} failed and will not be chosen.", model.getModelType());
+                    }
+                    models.add(model);
+                } catch (ExecutionException e) {
+                    log.error("Could not train model: {}", e.getCause().getMessage(), e.getCause());
+                }
+                job.advance(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while training models.", e);
+        } finally {
+            executor.shutdownNow();
         }
 
-        Double leastClassificationError = Collections.min(scoredModels.keySet());
-        String bestScoredModelType = scoredModels.get(leastClassificationError);
+        return models;
+    }
+
+    /**
+     * This method benchmarks the trained models one after another, so the measurements do not interfere.
+     * @param models Trained models
+     * @param testingSet Held-out data set, the first rows are used as sample
+     */
+    private void measureThroughput(List<LabeledModel> models, Instances testingSet) {
+        Instances sample = new Instances(testingSet, 0, Math.min(testingSet.size(), getProperties().getThroughputSampleSize()));
+        TrainingJob job = TrainingJob.current();
         for(LabeledModel model : models) {
-            if(model.getModelType().equals(bestScoredModelType)) {
-                getModelRepository().save(model.toScoredModel(leastClassificationError));
-                break;
+            job.checkCancelled();
+            job.advance(1);
+            if(!model.isFailed()) {
+                model.setRowsPerSecond(getMatchingModels().measureThroughput(model, sample));
+                log.info("Model {} ({}) classifies {} rows per second.", model.getModelType(), model.getConfiguration(),
+                        Math.round(model.getRowsPerSecond()));
             }
         }
+    }
 
-        state.setCurrentlyLearning(false);
-        log.info("Successfully generated model.");
+    private LabeledModel evaluateModel(LabeledModel model, Instances trainingSet, Instances testingSet) {
+        if(model.isFailed()) {
+            return model;
+        }
 
+        try {
+            model.setEvaluation(getMatchingModels().evaluate(model, trainingSet, testingSet));
+            log.info("Evaluated model {} ({}): {}", model.getModelType(), getProperties().getEvaluationMode(), model.getEvaluation());
+        } catch (Exception e) {
+            log.error("Could not evaluate model {}: {}", model.getModelType(), e.getMessage(), e);
+            model.setFailure(e);
+        }
+        return model;
     }
 
     /**
-     * This method deletes training and testing set.
+     * This method releases training and testing set. Trainings that are running keep using them, the data is dropped
+     * when the last of them finished.
      */
     public void freeTestingSet() {
-        setTestingSet(null);
-        setTrainingSet(null);
-        System.gc();
+        getDatasets().evict();
     }
 
     /**
-     * This method deletes training and testing set and loads them again.
+     * This method releases training and testing set and loads them again.
      */
     public void refreshTrainingAndTestingSet() {
         freeTestingSet();
-        setTrainingAndTestingSet();
+        getDataset().close();
     }
 
-    void setTrainingAndTestingSet() {
-        if(!trainingAndTestingSetExist()) {
-            log.info("Start loading training and testing set at {}", new Date());
-            List<MatchingResult> completeDataSet = new LinkedList<>();
-            Set<Long> shopIds = getMatchingResultRepository().getShopIds();
+    /**
+     * This method returns the current training and testing set. If necessary, they will be loaded.
+     * @return Reference to the dataset snapshot that has to be closed after training
+     */
+    DatasetReference getDataset() {
+        return getDatasets().acquire(this::loadDataset);
+    }
 
-            int matchesPerShop = Math.min(getProperties().getMatchesPerShop(),
-                    getProperties().getMaximumMatchesForLearning() / shopIds.size());
+    private DatasetSnapshot loadDataset(long version) {
+        log.info("Start loading training and testing set at {}", new Date());
+        List<Long> shopIds = new ArrayList<>(getMatchingResultRepository().getShopIds());
+        TrainingJob.current().enterPhase(TrainingPhase.LOADING, shopIds.size());
+        List<MatchingResult> completeDataSet = sampleMatches(shopIds);
+
+        int[] numbers = IndexSampler.shuffledIndices(completeDataSet.size(), new Random(getProperties().getRandomSeed()));
+        int trainingSetSize = (int) (getProperties().getTrainingSetPercentage() * numbers.length);
+        DatasetSnapshot snapshot = new DatasetSnapshot(version,
+                IndexSampler.select(completeDataSet, numbers, 0, trainingSetSize),
+                IndexSampler.select(completeDataSet, numbers, trainingSetSize, numbers.length));
+        log.info("Finished loading training and testing set at {}", new Date());
+        return snapshot;
+    }
 
+    private List<MatchingResult> sampleMatches(List<Long> shopIds) {
+        StratifiedReservoirSampler<MatchingResult> sampler = new StratifiedReservoirSampler<>(
+                getProperties().getMaximumMatchesForLearning(), getProperties().getRandomSeed());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, getProperties().getShopLoadingThreads()));
+        TrainingJob job = TrainingJob.current();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
             for (Long shopId : shopIds) {
-                completeDataSet.addAll(getMatchingResultRepository().getMatches(shopId, matchesPerShop));
+                futures.add(executor.submit(() -> {
+                    job.checkCancelled();
+                    sampleShop(shopId, sampler.getStratum(shopId));
+                    job.advance(1);
+                }));
             }
-
-            List<Integer> numbers = IntStream.range(0, completeDataSet.size()).boxed().collect(Collectors.toCollection(LinkedList::new));
-            Collections.shuffle(numbers);
-            int trainingSetSize = (int) (getProperties().getTrainingSetPercentage() * numbers.size());
-            setTrainingSet(IntStream.range(0, trainingSetSize).mapToObj(completeDataSet::get).collect(Collectors.toList()));
-            setTestingSet(IntStream.range(trainingSetSize, numbers.size()).mapToObj(completeDataSet::get).collect(Collectors.toList()));
-            log.info("Finished loading training and testing set at {}", new Date());
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading matching results.", e);
+        } catch (ExecutionException e) {
+            job.checkCancelled();
+            throw new IllegalStateException("Could not load matching results.", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+
+        // the sample is ordered by shop ID, so seeded runs are reproducible
+        return sampler.getSample();
     }
 
-    private boolean trainingAndTestingSetExist() {
-        return getTrainingSet() != null && getTestingSet() != null;
+    private void sampleShop(long shopId, StratifiedReservoirSampler.Stratum<MatchingResult> stratum) {
+        long start = System.currentTimeMillis();
+        try (Stream<MatchingResult> stream = getMatchingResultRepository().streamMatches(shopId)) {
+            stream.forEach(stratum::add);
+        }
+        log.info("Streamed {} matches of shop {} in {} ms", stratum.getCount(), shopId, System.currentTimeMillis() - start);
     }
 
     private List<LabelledDocument> getLabelledDocumentsByCategory(List<MatchingResult> matchingResults) {
@@ -219,20 +419,23 @@ public class ModelGeneratorService {
     }
 
     private List<LabelledDocument> getLabelledDocumentsByBrand(List<MatchingResult> matchingResults) {
-        List<LabelledDocument> documents = new LinkedList<>();
+        LabelledDocument[] documents = new LabelledDocument[matchingResults.size()];
+        List<OfferRequest> requests = new ArrayList<>(matchingResults.size());
+        for(int i = 0; i < matchingResults.size(); i++) {
+            requests.add(new OfferRequest(matchingResults.get(i).getShopId(), matchingResults.get(i).getOfferKey(), i));
+        }
 
-        for(MatchingResult matchingResult : matchingResults) {
-            try {
-                ShopOffer shopOffer = getCache().getOffer(matchingResult.getShopId(), matchingResult.getOfferKey());
-                String title = matchingResult.getParsedData().getTitle();
-                if (shopOffer != null && title != null && shopOffer.getBrandName() != null) {
-                    documents.add(getLabelledDocument(title, shopOffer.getBrandName()));
-                }
-            } catch (HttpClientErrorException e) {
-                e.printStackTrace();
+        TrainingJob job = TrainingJob.current();
+        job.enterPhase(TrainingPhase.FETCHING_OFFERS, requests.size());
+        getOfferFetchPipeline().fetch(requests, (request, shopOffer) -> {
+            job.checkCancelled();
+            job.advance(1);
+            String title = matchingResults.get(request.getIndex()).getParsedData().getTitle();
+            if (title != null && shopOffer.getBrandName() != null) {
+                documents[request.getIndex()] = getLabelledDocument(title, shopOffer.getBrandName());
             }
-        }
-        return documents;
+        });
+        return Arrays.stream(documents).filter(Objects::nonNull).collect(Collectors.toList());
     }
 
     private LabelledDocument getLabelledDocument(String content, String label) {
@@ -242,68 +445,101 @@ public class ModelGeneratorService {
         return document;
     }
 
-    private Instances getInstances(List<MatchingResult> matchingResults) {
-        ArrayList<Attribute> features = new AttributeVector();
-        Instances instanceSet = new Instances("Rel", features, matchingResults.size());
-        List<Integer> numbers = IntStream.range(0, matchingResults.size()).boxed().collect(Collectors.toCollection(LinkedList::new));
-        Collections.shuffle(numbers);
-
-        // use 50% of results for matches
-        for(int i = 0; i < numbers.size() / 2; i ++) {
-            MatchingResult result = matchingResults.get(numbers.get(i));
-            try {
-                ShopOffer shopOffer = getCache().getOffer(result.getShopId(), result.getOfferKey());
-                if(shopOffer == null) continue;
-                String brand = getBrand(result.getParsedData().getTitle());
-                Instance instance = new FeatureInstance(shopOffer, result.getParsedData(), true, brand);
-                instanceSet.add(instance);
-
-            } catch (HttpClientErrorException e) {
-                e.printStackTrace();
+    private Instances getInstances(DatasetReference dataset, List<MatchingResult> matchingResults) {
+        Random random = new Random(getProperties().getRandomSeed());
+        int[] numbers = IndexSampler.shuffledIndices(matchingResults.size(), random);
+
+        // use 50% of results for matches, the other 50% are paired with the offer of a different result
+        // (a position other than the row's own, mapped to its result, so a non-match never uses the row's own offer)
+        List<OfferRequest> requests = new ArrayList<>(numbers.length);
+        for(int i = 0; i < numbers.length; i++) {
+            int offerIndex = (i < numbers.length / 2) ? numbers[i] : numbers[IndexSampler.differentRandom(i, 0, numbers.length, random)];
+            requests.add(new OfferRequest(matchingResults.get(numbers[i]).getShopId(),
+                    matchingResults.get(offerIndex).getOfferKey(), i));
+        }
+
+        ClassifiedBrand[] classifiedBrands = classifyBrands(dataset, matchingResults);
+
+        FeatureMatrix features = new FeatureMatrix(numbers.length);
+        TrainingJob job = TrainingJob.current();
+        job.enterPhase(TrainingPhase.FETCHING_OFFERS, requests.size());
+        getOfferFetchPipeline().fetch(requests, (request, shopOffer) -> {
+            job.checkCancelled();
+            job.advance(1);
+            MatchingResult result = matchingResults.get(numbers[request.getIndex()]);
+            features.setRow(request.getIndex(), shopOffer, result.getParsedData(), request.getIndex() < numbers.length / 2,
+                    getBrand(classifiedBrands[numbers[request.getIndex()]]));
+        });
+
+        return features.toInstances();
+    }
+
+    /**
+     * This method classifies the brands of all parsed offers that were not yet classified with the loaded brand
+     * classifier, neither in an earlier session nor by an earlier training on the same dataset snapshot. The brands
+     * are classified in chunks of the configured batch size and kept with the snapshot, so every parsed offer is
+     * classified at most once per snapshot and brand classifier version. The matching results are shared with other
+     * trainings and are not changed, brands are only written to the matching results in the database if persisting
+     * them is enabled.
+     * @param dataset Dataset snapshot the matching results belong to
+     * @param matchingResults Matching results whose parsed offers should be classified
+     * @return Classified brand of every matching result at the same index
+     */
+    private ClassifiedBrand[] classifyBrands(DatasetReference dataset, List<MatchingResult> matchingResults) {
+        String version = getClassifier().getBrandClassifierVersion();
+        Map<String, ClassifiedBrand> snapshotBrands = dataset.getClassifiedBrands(version);
+        ClassifiedBrand[] classifiedBrands = new ClassifiedBrand[matchingResults.size()];
+        List<Integer> unclassifiedIndices = new ArrayList<>();
+        for(int i = 0; i < matchingResults.size(); i++) {
+            ClassifiedBrand storedBrand = matchingResults.get(i).getClassifiedBrand();
+            String offerId = DatasetSnapshot.getOfferId(matchingResults.get(i));
+            if(storedBrand != null && Objects.equals(version, storedBrand.getModelVersion())) {
+                classifiedBrands[i] = storedBrand;
+            } else if(offerId != null && snapshotBrands.containsKey(offerId)) {
+                classifiedBrands[i] = snapshotBrands.get(offerId);
+            } else {
+                unclassifiedIndices.add(i);
             }
         }
 
-        // use 50% of results for not-matches
-        for(int i = numbers.size() / 2; i < numbers.size(); i++) {
-            int nonMatchIndex = getDifferentRandom(i, 0, numbers.size());
-            MatchingResult result = matchingResults.get(numbers.get(i));
-            try {
-                ShopOffer shopOffer = getCache().getOffer(result.getShopId(), matchingResults.get(nonMatchIndex).getOfferKey());
-                if(shopOffer != null) {
-                    String brand = getBrand(result.getParsedData().getTitle());
-                    Instance instance = new FeatureInstance(shopOffer, result.getParsedData(), false, brand);
-                    instanceSet.add(instance);
+        int batchSize = Math.max(1, getProperties().getBrandBatchSize());
+        TrainingJob job = TrainingJob.current();
+        job.enterPhase(TrainingPhase.FEATURIZING, unclassifiedIndices.size());
+        for(int start = 0; start < unclassifiedIndices.size(); start += batchSize) {
+            job.checkCancelled();
+            List<Integer> batch = unclassifiedIndices.subList(start, Math.min(start + batchSize, unclassifiedIndices.size()));
+            List<Pair<String, Double>> pairs = getClassifier().getBrands(batch.stream()
+                    .map(index -> matchingResults.get(index).getParsedData().getTitle())
+                    .collect(Collectors.toList()));
+            for(int i = 0; i < pairs.size(); i++) {
+                Pair<String, Double> pair = pairs.get(i);
+                classifiedBrands[batch.get(i)] = (pair == null) ? new ClassifiedBrand(null, 0, version)
+                        : new ClassifiedBrand(pair.getLeft(), pair.getRight(), version);
+                String offerId = DatasetSnapshot.getOfferId(matchingResults.get(batch.get(i)));
+                if(offerId != null) {
+                    snapshotBrands.put(offerId, classifiedBrands[batch.get(i)]);
                 }
-            } catch (HttpClientErrorException e) {
-                e.printStackTrace();
             }
+            job.advance(batch.size());
         }
 
-        instanceSet.setClassIndex(12);
-        return instanceSet;
-    }
-
-    private static int getDifferentRandom(int excludedValue, int min, int max) {
-        if(excludedValue == min || excludedValue == max) return excludedValue;
-
-        int random;
-        do {
-            random = ThreadLocalRandom.current().nextInt(min, max);
-        } while(random == excludedValue);
-        return random;
+        log.info("Classified brands of {} offers, {} offers were already classified.",
+                unclassifiedIndices.size(), matchingResults.size() - unclassifiedIndices.size());
+        log.info("Brand centroid cache: {}", getClassifier().getBrandCacheStatistics());
+        if(getProperties().isPersistClassifiedBrands() && !unclassifiedIndices.isEmpty()) {
+            getMatchingResultRepository().saveClassifiedBrands(
+                    unclassifiedIndices.stream().map(matchingResults::get).collect(Collectors.toList()),
+                    unclassifiedIndices.stream().map(index -> classifiedBrands[index]).collect(Collectors.toList()));
+        }
+        return classifiedBrands;
     }
 
-    private String getBrand(String offerTitle) {
-        if(offerTitle != null) {
-            Pair<String, Double> pair = getClassifier().getBrand(offerTitle);
-            if(pair == null) {
-                return null;
-            }
-            return pair.getRight() < getProperties().getLabelThreshold() ? null : pair.getLeft();
+    private String getBrand(ClassifiedBrand classifiedBrand) {
+        if(classifiedBrand == null || classifiedBrand.getBrand() == null) {
+            return null;
         }
 
-        return null;
+        return classifiedBrand.getConfidence() < getProperties().getLabelThreshold() ? null : classifiedBrand.getBrand();
     }
 
-
 }
@@ -4,11 +4,17 @@ package de.hpi.modelgenerator.services;
 
 import de.hpi.machinelearning.LabelSeeker;
 import de.hpi.machinelearning.MeansBuilder;
+import de.hpi.machinelearning.ParagraphVectorsAlgorithm;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
 import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.embeddings.learning.SequenceLearningAlgorithm;
+import org.deeplearning4j.models.embeddings.learning.impl.sequence.DBOW;
+import org.deeplearning4j.models.embeddings.learning.impl.sequence.DM;
 import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
 import org.deeplearning4j.models.word2vec.VocabWord;
 import org.deeplearning4j.text.documentiterator.LabelledDocument;
@@ -20,6 +26,7 @@ import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.primitives.Pair;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -28,28 +35,78 @@ import java.util.Set;
 @Setter(AccessLevel.PRIVATE)
 @Slf4j
 @Service
+@RequiredArgsConstructor
 class NeuralNetClassifier {
 
-    ParagraphVectors getParagraphVectors(List<LabelledDocument> documents) {
+    private final ModelGeneratorProperties properties;
+
+    /**
+     * This method trains paragraph vectors with the configured hyperparameters.
+     * @param documents Labelled documents for training
+     * @param validationSet Labelled documents for early stopping
+     * @param workers Amount of threads used for training
+     * @return Trained paragraph vectors
+     */
+    ParagraphVectors getParagraphVectors(List<LabelledDocument> documents, List<LabelledDocument> validationSet, int workers) {
+        return getParagraphVectors(documents, validationSet, getProperties().getParagraphVectorsLayerSize(),
+                getProperties().getParagraphVectorsWindowSize(), getProperties().getParagraphVectorsEpochs(), workers);
+    }
 
+    /**
+     * This method trains paragraph vectors with the given hyperparameters, the remaining hyperparameters are
+     * configured. If early stopping is enabled, the accuracy on the validation set is checked after every epoch.
+     * @param documents Labelled documents for training
+     * @param validationSet Labelled documents for early stopping
+     * @param layerSize Size of the word and label vectors
+     * @param windowSize Amount of words around a word that are considered as its context
+     * @param epochs Maximum amount of passes over the documents
+     * @param workers Amount of threads used for training
+     * @return Trained paragraph vectors
+     */
+    ParagraphVectors getParagraphVectors(List<LabelledDocument> documents, List<LabelledDocument> validationSet,
+                                         int layerSize, int windowSize, int epochs, int workers) {
         TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
         tokenizerFactory.setTokenPreProcessor(new CommonPreprocessor());
-
-         ParagraphVectors paragraphVectors = (new ParagraphVectors.Builder()
-                .learningRate(0.025)
-                .minLearningRate(0.001)
-                .batchSize(1000)
-                .epochs(20)
+        ParagraphVectorsListener listener = new ParagraphVectorsListener(
+                validationSet.isEmpty() ? null : paragraphVectors -> checkUnlabeledData(paragraphVectors, validationSet),
+                getProperties().getParagraphVectorsEarlyStoppingPatience(),
+                getProperties().getParagraphVectorsEarlyStoppingMinDelta());
+
+        ParagraphVectors paragraphVectors = (new ParagraphVectors.Builder()
+                .learningRate(getProperties().getParagraphVectorsLearningRate())
+                .minLearningRate(getProperties().getParagraphVectorsMinLearningRate())
+                .batchSize(getProperties().getParagraphVectorsBatchSize())
+                .epochs(epochs)
+                .layerSize(layerSize)
+                .windowSize(windowSize)
+                .workers(Math.max(1, workers))
+                .negativeSample(getProperties().getParagraphVectorsNegativeSample())
+                .useHierarchicSoftmax(getProperties().getParagraphVectorsNegativeSample() <= 0)
+                .sequenceLearningAlgorithm(getSequenceLearningAlgorithm(getProperties().getParagraphVectorsAlgorithm()))
+                .setVectorsListeners(Collections.singletonList(listener))
                 .iterate(new SimpleLabelAwareIterator(documents))
                 .trainWordVectors(true)
                 .tokenizerFactory(tokenizerFactory)
                 .build());
 
-        paragraphVectors.fit();
+        try {
+            paragraphVectors.fit();
+        } catch (RuntimeException e) {
+            if(!listener.isStopped()) {
+                throw e;
+            }
+            log.info("{}", e.getMessage());
+        }
         return paragraphVectors;
     }
 
-    void checkUnlabeledData(ParagraphVectors paragraphVectors, List<LabelledDocument> testingSet) {
+    /**
+     * This method labels the documents of the testing set and logs the classification error.
+     * @param paragraphVectors Trained paragraph vectors
+     * @param testingSet Labelled documents that were not used for training
+     * @return Share of documents that were labelled correctly
+     */
+    double checkUnlabeledData(ParagraphVectors paragraphVectors, List<LabelledDocument> testingSet) {
         TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
         tokenizerFactory.setTokenPreProcessor(new CommonPreprocessor());
 
@@ -67,11 +124,8 @@ class NeuralNetClassifier {
 
         for(LabelledDocument document : testingSet) {
             INDArray documentAsCentroid = meansBuilder.documentAsVector(document);
-            List<Pair<String, Double>> scores = seeker.getScores(documentAsCentroid);
-
-
-            Pair<String, Double> bestLabel = getBestScoredLabel(scores);
-            if(bestLabel.getRight() < labelThreshold) {
+            Pair<String, Double> bestLabel = seeker.getBestLabel(documentAsCentroid);
+            if(bestLabel == null || bestLabel.getRight() < labelThreshold) {
                 notLabeled++;
             } else if(bestLabel.getLeft().equals(document.getLabels().get(0))){
                 rightMatches++;
@@ -86,20 +140,10 @@ class NeuralNetClassifier {
         log.info("Classification Error: {}", (double) wrongMatches / (double) (wrongMatches + rightMatches));
         log.info("Not labeled: {}", notLabeled);
         log.info("Different labels: {}", labels.size());
-
+        return testingSet.isEmpty() ? 0 : (double) rightMatches / testingSet.size();
     }
 
-    private static Pair<String, Double> getBestScoredLabel(List<Pair<String, Double>> scores) {
-        Double bestScore = Double.MIN_VALUE;
-        Pair<String, Double> bestPair = null;
-
-        for(Pair<String, Double> score : scores) {
-            if(score.getSecond() > bestScore) {
-                bestScore = score.getSecond();
-                bestPair = score;
-            }
-        }
-
-        return bestPair;
+    private static SequenceLearningAlgorithm<VocabWord> getSequenceLearningAlgorithm(ParagraphVectorsAlgorithm algorithm) {
+        return (algorithm == ParagraphVectorsAlgorithm.PV_DM) ? new DM<>() : new DBOW<>();
     }
 }
@@ -0,0 +1,37 @@
+package de.hpi.modelgenerator.services;
+
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+class OfferFetchMetrics {
+
+    private final long requestedOffers;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicLong fetchedOffers = new AtomicLong();
+    private final AtomicLong processedOffers = new AtomicLong();
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private volatile long endTime;
+
+    OfferFetchMetrics(long requestedOffers) {
+        this.requestedOffers = requestedOffers;
+    }
+
+    void stop() {
+        this.endTime = System.currentTimeMillis();
+    }
+
+    double getOffersPerSecond() {
+        long duration = ((getEndTime() == 0) ? System.currentTimeMillis() : getEndTime()) - getStartTime();
+        return (duration <= 0) ? 0 : getProcessedOffers().get() * 1000d / duration;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d/%d offers processed (%d found), %.1f offers/s, %d requests in flight",
+                getProcessedOffers().get(), getRequestedOffers(), getFetchedOffers().get(), getOffersPerSecond(),
+                getInFlightRequests().get());
+    }
+}
@@ -0,0 +1,169 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.repo.Cache;
+import de.hpi.modelgenerator.persistence.repo.LocalOfferStore;
+import de.hpi.modelgenerator.properties.CacheProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+class OfferFetchPipeline {
+
+    private static final long METRICS_LOG_INTERVAL = 10000;
+    private static final long QUEUE_TIMEOUT = 100;
+
+    private final Cache cache;
+    private final CacheProperties properties;
+    private final LocalOfferStore localOfferStore;
+    private final ExecutorService fetchExecutor;
+
+    @Autowired
+    OfferFetchPipeline(Cache cache, CacheProperties properties, LocalOfferStore localOfferStore) {
+        this.cache = cache;
+        this.properties = properties;
+        this.localOfferStore = localOfferStore;
+        this.fetchExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getMaxConcurrentRequests()));
+    }
+
+    /**
+     * This method fetches the offers of all requests asynchronously. Every fetched offer is handed to the consumer as
+     * soon as its batch arrived, so that waiting for the cache overlaps with processing the offers.
+     * At most the configured amount of requests per shop are in flight and fetching pauses while the consumer lags
+     * behind. Throughput and requests in flight are reported to the job of the calling thread.
+     * @param requests Offers that should be fetched
+     * @param consumer Called on the calling thread for every offer that could be fetched
+     * @return Throughput metrics of this fetch
+     */
+    OfferFetchMetrics fetch(List<OfferRequest> requests, BiConsumer<OfferRequest, ShopOffer> consumer) {
+        Collection<Queue<List<OfferRequest>>> batchesByShop = getBatchesByShop(requests);
+        int batchCount = batchesByShop.stream().mapToInt(Queue::size).sum();
+        BlockingQueue<FetchedBatch> fetchedBatches = new ArrayBlockingQueue<>(Math.max(1, getProperties().getFetchQueueCapacity()));
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        OfferFetchMetrics metrics = new OfferFetchMetrics(batchesByShop.stream().flatMap(Queue::stream).mapToInt(List::size).sum());
+        TrainingJob job = TrainingJob.current();
+
+        for(Queue<List<OfferRequest>> batches : batchesByShop) {
+            int lanes = Math.min(batches.size(), Math.max(1, getProperties().getMaxInFlightRequestsPerShop()));
+            for(int i = 0; i < lanes; i++) {
+                getFetchExecutor().execute(() -> fetchBatches(batches, fetchedBatches, cancelled, metrics));
+            }
+        }
+
+        try {
+            long lastLog = System.currentTimeMillis();
+            int receivedBatches = 0;
+            while(receivedBatches < batchCount) {
+                FetchedBatch batch = fetchedBatches.poll(QUEUE_TIMEOUT, TimeUnit.MILLISECONDS);
+                if(batch != null) {
+                    receivedBatches++;
+                    process(batch, consumer, metrics);
+                }
+                job.reportOfferFetch(metrics.getOffersPerSecond(), metrics.getInFlightRequests().get());
+                if(System.currentTimeMillis() - lastLog > METRICS_LOG_INTERVAL) {
+                    log.info("Fetching offers: {}", metrics);
+                    lastLog = System.currentTimeMillis();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching offers.", e);
+        } finally {
+            cancelled.set(true);
+            fetchedBatches.clear();
+            metrics.stop();
+            job.reportOfferFetch(metrics.getOffersPerSecond(), metrics.getInFlightRequests().get());
+        }
+
+        log.info("Finished fetching offers: {}", metrics);
+        log.info("Local offer store: {}", getLocalOfferStore().getStatistics());
+        return metrics;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        getFetchExecutor().shutdownNow();
+    }
+
+    private Collection<Queue<List<OfferRequest>>> getBatchesByShop(List<OfferRequest> requests) {
+        int batchSize = Math.max(1, getProperties().getOfferBatchSize());
+        Map<Long, List<OfferRequest>> requestsByShop = requests.stream()
+                .filter(request -> request.getOfferKey() != null)
+                .collect(Collectors.groupingBy(OfferRequest::getShopId, LinkedHashMap::new, Collectors.toList()));
+
+        List<Queue<List<OfferRequest>>> batchesByShop = new ArrayList<>();
+        for(List<OfferRequest> shopRequests : requestsByShop.values()) {
+            Queue<List<OfferRequest>> batches = new ConcurrentLinkedQueue<>();
+            for(int start = 0; start < shopRequests.size(); start += batchSize) {
+                batches.add(shopRequests.subList(start, Math.min(start + batchSize, shopRequests.size())));
+            }
+            batchesByShop.add(batches);
+        }
+        return batchesByShop;
+    }
+
+    private void fetchBatches(Queue<List<OfferRequest>> batches, BlockingQueue<FetchedBatch> fetchedBatches,
+                              AtomicBoolean cancelled, OfferFetchMetrics metrics) {
+        List<OfferRequest> batch;
+        while(!cancelled.get() && (batch = batches.poll()) != null) {
+            FetchedBatch fetchedBatch = new FetchedBatch(batch, fetchBatch(batch, metrics));
+            try {
+                boolean delivered = false;
+                while(!delivered && !cancelled.get()) {
+                    delivered = fetchedBatches.offer(fetchedBatch, QUEUE_TIMEOUT, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Map<String, ShopOffer> fetchBatch(List<OfferRequest> batch, OfferFetchMetrics metrics) {
+        long shopId = batch.get(0).getShopId();
+        List<String> offerKeys = batch.stream().map(OfferRequest::getOfferKey).collect(Collectors.toList());
+        metrics.getInFlightRequests().incrementAndGet();
+        try {
+            return getCache().getOffers(shopId, offerKeys);
+        } catch (RuntimeException e) {
+            log.warn("Could not fetch batch of {} offers of shop {}: {}", batch.size(), shopId, e.getMessage());
+            return Collections.emptyMap();
+        } finally {
+            metrics.getInFlightRequests().decrementAndGet();
+        }
+    }
+
+    private static void process(FetchedBatch batch, BiConsumer<OfferRequest, ShopOffer> consumer, OfferFetchMetrics metrics) {
+        for(OfferRequest request : batch.getRequests()) {
+            ShopOffer offer = batch.getOffers().get(request.getOfferKey());
+            if(offer != null) {
+                metrics.getFetchedOffers().incrementAndGet();
+                consumer.accept(request, offer);
+            }
+            metrics.getProcessedOffers().incrementAndGet();
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static class FetchedBatch {
+
+        private final List<OfferRequest> requests;
+        private final Map<String, ShopOffer> offers;
+
+    }
+}
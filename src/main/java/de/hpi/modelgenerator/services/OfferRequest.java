@@ -0,0 +1,14 @@
+package de.hpi.modelgenerator.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
+class OfferRequest {
+
+    private final long shopId;
+    private final String offerKey;
+    private final int index;
+
+}
@@ -0,0 +1,100 @@
+package de.hpi.modelgenerator.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.models.sequencevectors.SequenceVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.deeplearning4j.models.sequencevectors.interfaces.VectorsListener;
+import org.deeplearning4j.models.word2vec.VocabWord;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Logs the throughput of every epoch of paragraph vectors training and stops the training early, once the validation
+ * accuracy did not improve for the configured amount of epochs.
+ * The training of paragraph vectors cannot be stopped from outside, so the listener aborts it by throwing
+ * {@link EarlyStopping} after a completed epoch. The weights of the last epoch are kept. In the same way, the training
+ * stops after the current epoch if its thread was interrupted.
+ */
+@Slf4j
+class ParagraphVectorsListener implements VectorsListener<VocabWord> {
+
+    private final ToDoubleFunction<ParagraphVectors> validation;
+    private final int patience;
+    private final double minDelta;
+    private long epochStart = System.nanoTime();
+    private int epoch;
+    private double bestAccuracy = Double.NEGATIVE_INFINITY;
+    private int epochsWithoutImprovement;
+    private volatile boolean stopped;
+
+    /**
+     * @param validation Computes the accuracy on the validation set, null disables early stopping
+     * @param patience Amount of epochs without improvement after which the training stops (0 disables early stopping)
+     * @param minDelta Minimum increase of the accuracy that counts as improvement
+     */
+    ParagraphVectorsListener(ToDoubleFunction<ParagraphVectors> validation, int patience, double minDelta) {
+        this.validation = validation;
+        this.patience = patience;
+        this.minDelta = minDelta;
+    }
+
+    @Override
+    public boolean validateEvent(ListenerEvent event, long argument) {
+        return event == ListenerEvent.EPOCH;
+    }
+
+    /**
+     * The first epoch includes building the vocabulary.
+     * @throws CancellationException when the training thread was interrupted
+     */
+    @Override
+    public void processEvent(ListenerEvent event, SequenceVectors<VocabWord> sequenceVectors, long argument) {
+        epoch++;
+        if(Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Stopped paragraph vectors training after epoch " + epoch
+                    + ", the training was interrupted.");
+        }
+        double seconds = (System.nanoTime() - epochStart) / 1e9;
+        long words = (sequenceVectors.getVocab() == null) ? 0 : sequenceVectors.getVocab().totalWordOccurrences();
+        log.info("Finished epoch {} of paragraph vectors in {} s ({} words/sec).", epoch,
+                String.format("%.1f", seconds), (seconds > 0) ? Math.round(words / seconds) : 0);
+
+        if(isEarlyStoppingEnabled()) {
+            checkImprovement(validation.applyAsDouble((ParagraphVectors) sequenceVectors));
+        }
+        epochStart = System.nanoTime();
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    private boolean isEarlyStoppingEnabled() {
+        return validation != null && patience > 0;
+    }
+
+    private void checkImprovement(double accuracy) {
+        if(accuracy > bestAccuracy + minDelta) {
+            bestAccuracy = accuracy;
+            epochsWithoutImprovement = 0;
+        } else {
+            epochsWithoutImprovement++;
+        }
+        log.info("Validation accuracy after epoch {}: {} (best {})", epoch, accuracy, bestAccuracy);
+
+        if(epochsWithoutImprovement >= patience) {
+            stopped = true;
+            throw new EarlyStopping("Stopped paragraph vectors training after epoch " + epoch
+                    + ", the validation accuracy did not improve for " + patience + " epochs.");
+        }
+    }
+
+    static class EarlyStopping extends RuntimeException {
+
+        private EarlyStopping(String message) {
+            super(message);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package de.hpi.modelgenerator.services;
 
+import de.hpi.machinelearning.HnswIndex;
 import de.hpi.machinelearning.LabelSeeker;
 import de.hpi.machinelearning.MeansBuilder;
+import de.hpi.machinelearning.persistence.SerializedParagraphVectors;
 import de.hpi.modelgenerator.persistence.repo.ModelFileRepository;
 import de.hpi.modelgenerator.persistence.repo.ModelRepository;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +23,7 @@ import org.nd4j.linalg.primitives.Pair;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
@@ -30,29 +34,96 @@ import java.util.List;
 class ProbabilityClassifier {
 
     private final ModelRepository modelRepository;
+    private final ModelGeneratorProperties properties;
     private final TokenizerFactory tokenizerFactory = new DefaultTokenizerFactory();
 
     private ParagraphVectors brandClassifier;
+    private String brandClassifierVersion;
     private MeansBuilder brandMeansBuilder;
     private LabelSeeker brandLabelSeeker;
+    private HnswIndex brandIndex;
 
     Pair<String, Double> getBrand(String offerTitle) {
         LabelledDocument document = getLabelledDocumentFromTitle(offerTitle);
         INDArray documentAsCentroid = getBrandMeansBuilder().documentAsVector(document);
-        List<Pair<String, Double>> scores = getBrandLabelSeeker().getScores(documentAsCentroid);
 
-        return getBestScoredLabel(scores);
+        if(getBrandIndex() != null) {
+            return getIndexedBrand(documentAsCentroid);
+        }
+        return getBrandLabelSeeker().getBestLabel(documentAsCentroid);
+    }
+
+    /**
+     * This method classifies the brands of multiple offer titles at once.
+     * @param offerTitles Titles of the offers
+     * @return Best scored brand per title (in the order of the titles) or null, if no brand could be determined
+     */
+    List<Pair<String, Double>> getBrands(List<String> offerTitles) {
+        INDArray documentsAsCentroids = getBrandMeansBuilder().documentsAsMatrix(offerTitles);
+        List<Pair<String, Double>> brands;
+        if(getBrandIndex() != null) {
+            brands = new ArrayList<>(offerTitles.size());
+            for(int i = 0; i < offerTitles.size(); i++) {
+                brands.add(getIndexedBrand(documentsAsCentroids.getRow(i)));
+            }
+        } else {
+            brands = getBrandLabelSeeker().getBestLabels(documentsAsCentroids);
+        }
+
+        for(int i = 0; i < offerTitles.size(); i++) {
+            if(offerTitles.get(i) == null) {
+                brands.set(i, null);
+            }
+        }
+
+        return brands;
+    }
+
+    String getBrandCacheStatistics() {
+        return (getBrandMeansBuilder() == null) ? "not loaded" : getBrandMeansBuilder().getCacheStatistics();
+    }
+
+    /**
+     * This method returns the version of the loaded brand classifier. Brands classified with a different version have
+     * to be classified again.
+     * @return Version of the brand classifier or null, if no classifier is loaded
+     */
+    String getBrandClassifierVersion() {
+        return brandClassifierVersion;
     }
 
     void loadBrandClassifier() throws IOException {
-        setBrandClassifier(getModelRepository().getBrandClassifier());
+        SerializedParagraphVectors serializedBrandClassifier = getModelRepository().getSerializedBrandClassifier();
+        setBrandClassifierVersion(serializedBrandClassifier.getVersion());
+        setBrandClassifier(serializedBrandClassifier.getNeuralNetwork());
         setBrandMeansBuilder(new MeansBuilder(
                 (InMemoryLookupTable<VocabWord>)getBrandClassifier().getLookupTable(),
-                getTokenizerFactory()));
+                getTokenizerFactory(),
+                getProperties().getBrandCentroidCacheSize()));
         setBrandLabelSeeker(new LabelSeeker(getBrandClassifier().getLabelsSource().getLabels(),
                 (InMemoryLookupTable<VocabWord>) getBrandClassifier().getLookupTable()));
+        setBrandIndex(getProperties().isBrandIndexEnabled() ? buildBrandIndex() : null);
+
+        log.info("Loaded brand classifier (version {})", getBrandClassifierVersion());
+    }
+
+    private HnswIndex buildBrandIndex() {
+        long start = System.currentTimeMillis();
+        HnswIndex index = new HnswIndex(
+                getBrandLabelSeeker().getLabels(),
+                getBrandLabelSeeker().getLabelVectors(),
+                getProperties().getBrandIndexM(),
+                getProperties().getBrandIndexEfConstruction(),
+                getProperties().getBrandIndexEfSearch(),
+                getProperties().getRandomSeed());
+
+        log.info("Built brand index over {} brands in {} ms", index.size(), System.currentTimeMillis() - start);
+        return index;
+    }
 
-        log.info("Loaded brand classifier");
+    private Pair<String, Double> getIndexedBrand(INDArray documentAsCentroid) {
+        List<Pair<String, Double>> brands = getBrandIndex().search(documentAsCentroid.dup().data().asFloat(), 1);
+        return (brands.isEmpty() || brands.get(0).getRight() <= 0) ? null : brands.get(0);
     }
 
     private LabelledDocument getLabelledDocumentFromTitle(String offerTitle) {
@@ -60,18 +131,4 @@ class ProbabilityClassifier {
         document.setContent(offerTitle);
         return document;
     }
-
-    private Pair<String, Double> getBestScoredLabel(List<Pair<String, Double>> scores) {
-        Double bestScore = Double.MIN_VALUE;
-        Pair<String, Double> bestPair = null;
-
-        for(Pair<String, Double> score : scores) {
-            if(score.getSecond() > bestScore) {
-                bestScore = score.getSecond();
-                bestPair = score;
-            }
-        }
-
-        return bestPair;
-    }
 }
@@ -0,0 +1,151 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingJobStatus;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Runs training jobs asynchronously on a bounded executor and keeps the status of recent jobs.
+ */
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+public class TrainingJobService {
+
+    private final ModelGeneratorService service;
+    private final ModelGeneratorProperties properties;
+    private final ExecutorService jobExecutor;
+    private final Map<String, TrainingJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, Future<?>> futures = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TrainingJobService(ModelGeneratorService service, ModelGeneratorProperties properties) {
+        this.service = service;
+        this.properties = properties;
+        int threads = Math.max(1, properties.getTrainingJobThreads());
+        this.jobExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getTrainingJobQueueCapacity())));
+    }
+
+    /**
+     * This method queues a training job and returns immediately.
+     * @param type Type of the job
+     * @param task Work of the job
+     * @return Queued job
+     * @throws RejectedExecutionException when too many jobs are queued
+     */
+    public TrainingJob submit(String type, TrainingTask task) {
+        TrainingJob job = new TrainingJob(type);
+        getJobs().put(job.getId(), job);
+        try {
+            getFutures().put(job.getId(), getJobExecutor().submit(() -> run(job, task)));
+        } catch (RejectedExecutionException e) {
+            getJobs().remove(job.getId());
+            throw e;
+        }
+        removeFinishedJobs();
+        log.info("Queued training job {} ({})", job.getId(), type);
+        return job;
+    }
+
+    public TrainingJob getJob(String id) {
+        return getJobs().get(id);
+    }
+
+    public List<TrainingJob> getAllJobs() {
+        return getJobs().values().stream()
+                .sorted(Comparator.comparing(TrainingJob::getCreatedAt))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * This method cancels a job. A queued job does not start anymore, a running job stops at its next cancellation
+     * point and frees the training and testing set.
+     * @param id ID of the job
+     * @return Cancelled job or null, if there is no job with the ID
+     */
+    public TrainingJob cancel(String id) {
+        TrainingJob job = getJobs().get(id);
+        if(job == null || job.isFinished()) {
+            return job;
+        }
+
+        job.requestCancellation();
+        Future<?> future = getFutures().get(id);
+        if(future != null) {
+            future.cancel(true);
+        }
+        job.cancelQueued();
+        log.info("Requested cancellation of training job {}", id);
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        getJobExecutor().shutdownNow();
+    }
+
+    private void run(TrainingJob job, TrainingTask task) {
+        if(job.isCancelRequested() || !job.start()) {
+            return;
+        }
+
+        TrainingJob.setCurrent(job);
+        try {
+            task.run();
+            job.finish(TrainingJobStatus.SUCCEEDED);
+            log.info("Finished training job {} ({})", job.getId(), job.getType());
+        } catch (Exception e) {
+            job.setError(e.getMessage());
+            if(job.isCancelRequested()) {
+                job.finish(TrainingJobStatus.CANCELLED);
+                log.info("Cancelled training job {} ({}) in phase {}", job.getId(), job.getType(), job.getPhase());
+            } else {
+                job.finish(TrainingJobStatus.FAILED);
+                log.error("Training job {} ({}) failed: {}", job.getId(), job.getType(), e.getMessage(), e);
+            }
+        } finally {
+            TrainingJob.setCurrent(null);
+            getFutures().remove(job.getId());
+            if(job.getStatus() == TrainingJobStatus.CANCELLED) {
+                getService().freeTestingSet();
+            }
+            Thread.interrupted();
+        }
+    }
+
+    /**
+     * Finished jobs are kept for polling, the oldest ones are removed beyond the configured amount.
+     */
+    private void removeFinishedJobs() {
+        List<TrainingJob> finishedJobs = new ArrayList<>();
+        for(TrainingJob job : getJobs().values()) {
+            if(job.isFinished()) {
+                finishedJobs.add(job);
+            }
+        }
+        finishedJobs.sort(Comparator.comparing(TrainingJob::getFinishedAt));
+        for(int i = 0; i < finishedJobs.size() - getProperties().getRetainedTrainingJobs(); i++) {
+            getJobs().remove(finishedJobs.get(i).getId());
+            getFutures().remove(finishedJobs.get(i).getId());
+        }
+    }
+
+    @FunctionalInterface
+    public interface TrainingTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,166 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingJobStatus;
+import de.hpi.modelgenerator.persistence.TrainingPhase;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates all classifiers as a dependency graph: category and brand classifier do not depend on each other and are
+ * trained at the same time, the model needs the brand classifier and is trained as soon as it is saved.
+ * Every stage reports its progress to its own stage of the job of the calling thread, the job itself counts the
+ * finished stages and can be cancelled as a whole.
+ */
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+@RequiredArgsConstructor
+public class TrainingPipeline {
+
+    private final ModelGeneratorService service;
+    private final ModelGeneratorProperties properties;
+
+    /**
+     * This method loads a new training and testing set and generates category classifier, brand classifier and model
+     * on it. The pipeline holds the dataset snapshot until all stages finished and passes it to them, so all of them
+     * use the same data, even if the dataset is freed or refreshed in the meantime.
+     * If only one training may run at a time, the stages run one after another. A failing stage does not stop the
+     * stages that do not depend on it. If the pipeline is interrupted, it cancels the stages and waits for them before
+     * it returns, so no stage holds a training slot or the dataset afterwards.
+     * @param categoryState Running trainings of the category classifier
+     * @param brandState Running trainings of the brand classifier
+     * @param modelState Running trainings of the model
+     * @throws Exception the failure of the first failed stage
+     */
+    public void generateAllClassifiers(ClassifierTrainingState categoryState, ClassifierTrainingState brandState,
+                                       ClassifierTrainingState modelState) throws Exception {
+        TrainingJob job = TrainingJob.current();
+        ExecutorService executor = Executors.newFixedThreadPool((getProperties().getMaxConcurrentTrainings() > 1) ? 2 : 1);
+        long start = System.currentTimeMillis();
+        getService().freeTestingSet();
+        try(DatasetReference dataset = getService().getDataset()) {
+            log.info("Generate all classifiers on dataset version {}.", dataset.getVersion());
+            job.enterPhase(TrainingPhase.TRAINING, 3);
+            Stage category = new Stage("category classifier", job,
+                    () -> getService().generateCategoryClassifier(categoryState, dataset));
+            Stage brand = new Stage("brand classifier", job,
+                    () -> getService().generateBrandClassifier(brandState, dataset));
+            Stage model = new Stage("model", job, () -> getService().generateModel(modelState, dataset));
+
+            CompletableFuture<Void> categoryDone = CompletableFuture.runAsync(category, executor);
+            CompletableFuture<Void> modelDone = CompletableFuture.runAsync(brand, executor).thenRunAsync(model, executor);
+            try {
+                CompletableFuture.allOf(categoryDone, modelDone).get();
+            } catch (InterruptedException e) {
+                cancelStages(job, executor);
+                throw e;
+            }
+
+            logCriticalPath(start, category, brand, model);
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        } finally {
+            executor.shutdown();
+            skipUnstartedStages(job);
+            getService().freeTestingSet();
+        }
+    }
+
+    private static void skipUnstartedStages(TrainingJob job) {
+        for(TrainingJob stage : job.getStages()) {
+            stage.cancelQueued();
+        }
+    }
+
+    /**
+     * Running stages stop at their next cancellation point. The dataset is released only after all of them stopped.
+     */
+    private void cancelStages(TrainingJob job, ExecutorService executor) {
+        job.requestCancellation();
+        executor.shutdownNow();
+        boolean terminated = false;
+        while(!terminated) {
+            try {
+                terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+                if(!terminated) {
+                    log.info("Waiting for the cancelled pipeline stages to stop.");
+                }
+            } catch (InterruptedException e) {
+                log.info("Ignored interrupt while waiting for the cancelled pipeline stages.");
+            }
+        }
+        Thread.currentThread().interrupt();
+    }
+
+    /**
+     * The critical path is the longest chain of dependent stages, it bounds the duration of the whole pipeline.
+     */
+    private void logCriticalPath(long start, Stage category, Stage brand, Stage model) {
+        long categoryPath = category.finishedAt - start;
+        long brandPath = model.finishedAt - start;
+        log.info("Generated all classifiers in {} ms (category classifier {} ms, brand classifier {} ms, model {} ms).",
+                System.currentTimeMillis() - start, category.getDuration(), brand.getDuration(), model.getDuration());
+        log.info("Critical path: {} with {} ms, trained one after another the stages would take {} ms.",
+                (categoryPath > brandPath) ? "category classifier" : "brand classifier -> model",
+                Math.max(categoryPath, brandPath), category.getDuration() + brand.getDuration() + model.getDuration());
+    }
+
+    /**
+     * Training of one classifier on a pipeline thread. The stage reports to its own stage of the pipeline's job and
+     * records when it started and finished.
+     */
+    private static class Stage implements Runnable {
+
+        private final String name;
+        private final TrainingJob job;
+        private final TrainingJob stage;
+        private final TrainingJobService.TrainingTask task;
+        private volatile long startedAt;
+        private volatile long finishedAt;
+
+        private Stage(String name, TrainingJob job, TrainingJobService.TrainingTask task) {
+            this.name = name;
+            this.job = job;
+            this.stage = job.addStage(name);
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            TrainingJob.setCurrent(stage);
+            stage.start();
+            startedAt = System.currentTimeMillis();
+            log.info("Start pipeline stage {}.", name);
+            try {
+                task.run();
+                stage.finish(TrainingJobStatus.SUCCEEDED);
+            } catch (Exception e) {
+                stage.setError(e.getMessage());
+                stage.finish(stage.isCancelRequested() ? TrainingJobStatus.CANCELLED : TrainingJobStatus.FAILED);
+                throw new CompletionException(e);
+            } finally {
+                finishedAt = System.currentTimeMillis();
+                job.advance(1);
+                TrainingJob.setCurrent(null);
+            }
+            log.info("Finished pipeline stage {} in {} ms.", name, getDuration());
+        }
+
+        private long getDuration() {
+            return finishedAt - startedAt;
+        }
+    }
+}
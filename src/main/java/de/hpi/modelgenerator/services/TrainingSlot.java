@@ -0,0 +1,26 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+
+/**
+ * Permission to run one training. Closing the slot releases it, closing it again has no effect.
+ */
+class TrainingSlot implements AutoCloseable {
+
+    private final TrainingSlots slots;
+    private final ClassifierTrainingState state;
+    private boolean released;
+
+    TrainingSlot(TrainingSlots slots, ClassifierTrainingState state) {
+        this.slots = slots;
+        this.state = state;
+    }
+
+    @Override
+    public synchronized void close() {
+        if(!released) {
+            released = true;
+            slots.release(state);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingPhase;
+import de.hpi.modelgenerator.persistence.TrainingSlotMode;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the amount of concurrent trainings per classifier and in total. Both limits are checked and the training is
+ * started while holding one lock, so concurrent requests cannot exceed them. Depending on the configured mode,
+ * requests without a free slot wait or fail.
+ * Slots are acquired by the training itself, which runs in a training job. A training without a free slot therefore
+ * fails its job instead of the request that queued it, and a waiting training occupies a thread of the job executor.
+ */
+@Service
+@Getter(AccessLevel.PRIVATE)
+@Slf4j
+@RequiredArgsConstructor
+class TrainingSlots {
+
+    private final ModelGeneratorProperties properties;
+    private int activeTrainings;
+
+    /**
+     * This method reserves a slot for training the classifier of the given state.
+     * @param state Running trainings of the classifier
+     * @return Slot that has to be closed when the training finished
+     * @throws IllegalStateException when no slot is free in reject mode, the timeout passed or the thread was interrupted
+     */
+    TrainingSlot acquire(ClassifierTrainingState state) {
+        long timeout = TimeUnit.SECONDS.toMillis(getProperties().getTrainingSlotTimeoutSeconds());
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this) {
+            if(!isFree(state) && getProperties().getTrainingSlotMode() == TrainingSlotMode.QUEUE) {
+                log.info("Wait for a free slot to train {} classifier.", state.getClassifier());
+                TrainingJob.current().enterPhase(TrainingPhase.QUEUED, 0);
+            }
+
+            while(!isFree(state)) {
+                long remaining = deadline - System.currentTimeMillis();
+                if(getProperties().getTrainingSlotMode() != TrainingSlotMode.QUEUE) {
+                    throw new IllegalStateException("No free slot to train " + state.getClassifier() + " classifier.");
+                } else if(timeout > 0 && remaining <= 0) {
+                    throw new IllegalStateException("Timed out waiting for a free slot to train " + state.getClassifier() + " classifier.");
+                }
+
+                try {
+                    wait((timeout > 0) ? remaining : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a free slot.", e);
+                }
+            }
+
+            activeTrainings++;
+            state.getActiveTrainings().incrementAndGet();
+        }
+        return new TrainingSlot(this, state);
+    }
+
+    synchronized int getActiveTrainings() {
+        return activeTrainings;
+    }
+
+    synchronized void release(ClassifierTrainingState state) {
+        activeTrainings--;
+        state.getActiveTrainings().decrementAndGet();
+        notifyAll();
+    }
+
+    private boolean isFree(ClassifierTrainingState state) {
+        return activeTrainings < Math.max(1, getProperties().getMaxConcurrentTrainings())
+                && state.getActiveTrainings().get() < Math.max(1, getProperties().getMaxConcurrentTrainingsPerClassifier());
+    }
+}
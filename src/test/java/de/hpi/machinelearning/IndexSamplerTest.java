@@ -0,0 +1,67 @@
+package de.hpi.machinelearning;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexSamplerTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_SIZE = 100;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_SEED = 42;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_DRAWS = 1000;
+
+    @Test
+    public void shuffleEveryIndexOnceAndReproducibly() {
+        int[] indices = IndexSampler.shuffledIndices(getEXAMPLE_SIZE(), new Random(getEXAMPLE_SEED()));
+        int[] sortedIndices = indices.clone();
+        Arrays.sort(sortedIndices);
+
+        for(int i = 0; i < getEXAMPLE_SIZE(); i++) {
+            assertEquals(i, sortedIndices[i]);
+        }
+        assertArrayEquals(indices, IndexSampler.shuffledIndices(getEXAMPLE_SIZE(), new Random(getEXAMPLE_SEED())));
+        assertEquals(0, IndexSampler.shuffledIndices(0, new Random(getEXAMPLE_SEED())).length);
+    }
+
+    @Test
+    public void selectElementsAtIndexRange() {
+        List<String> elements = new LinkedList<>(Arrays.asList("a", "b", "c", "d"));
+        int[] indices = {3, 0, 2, 1};
+
+        assertEquals(Arrays.asList("d", "a"), IndexSampler.select(elements, indices, 0, 2));
+        assertEquals(Arrays.asList("c", "b"), IndexSampler.select(elements, indices, 2, 4));
+        assertTrue(IndexSampler.select(elements, indices, 2, 2).isEmpty());
+    }
+
+    @Test
+    public void drawEveryOtherValueOfRange() {
+        Random random = new Random(getEXAMPLE_SEED());
+        int[] counts = new int[5];
+        for(int draw = 0; draw < getEXAMPLE_DRAWS(); draw++) {
+            counts[IndexSampler.differentRandom(2, 0, counts.length, random)]++;
+        }
+
+        assertEquals(0, counts[2]);
+        for(int value : new int[]{0, 1, 3, 4}) {
+            assertTrue(counts[value] > 0);
+        }
+    }
+
+    @Test
+    public void excludeBoundsOfRange() {
+        Random random = new Random(getEXAMPLE_SEED());
+        for(int draw = 0; draw < getEXAMPLE_DRAWS(); draw++) {
+            assertNotEquals(0, IndexSampler.differentRandom(0, 0, 3, random));
+            assertNotEquals(2, IndexSampler.differentRandom(2, 0, 3, random));
+        }
+        assertEquals(0, IndexSampler.differentRandom(0, 0, 1, random));
+        assertEquals(1, IndexSampler.differentRandom(5, 1, 2, random));
+    }
+}
@@ -0,0 +1,57 @@
+package de.hpi.machinelearning;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.junit.Test;
+import weka.classifiers.evaluation.NominalPrediction;
+import weka.classifiers.evaluation.Prediction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ModelEvaluationTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int POSITIVE_CLASS_INDEX = 0;
+    @Getter(AccessLevel.PRIVATE) private final static int NEGATIVE_CLASS_INDEX = 1;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_EVALUATION_NANOS = 8000;
+    @Getter(AccessLevel.PRIVATE) private final static double DELTA = 1e-6;
+
+    @Test
+    public void computeMetricsOfMatchClass() {
+        List<Prediction> predictions = Arrays.asList(
+                getPrediction(getPOSITIVE_CLASS_INDEX(), 0.8),
+                getPrediction(getPOSITIVE_CLASS_INDEX(), 0.6),
+                getPrediction(getPOSITIVE_CLASS_INDEX(), 0.4),
+                getPrediction(getNEGATIVE_CLASS_INDEX(), 0.7),
+                getPrediction(getNEGATIVE_CLASS_INDEX(), 0.1));
+
+        ModelEvaluation evaluation = ModelEvaluation.fromPredictions(predictions, getPOSITIVE_CLASS_INDEX(),
+                getEXAMPLE_EVALUATION_NANOS());
+
+        assertEquals(0.6, evaluation.getAccuracy(), getDELTA());
+        assertEquals(2 / 3d, evaluation.getPrecision(), getDELTA());
+        assertEquals(2 / 3d, evaluation.getRecall(), getDELTA());
+        assertEquals(2 / 3d, evaluation.getFMeasure(), getDELTA());
+        assertEquals(4 / 6d, evaluation.getAreaUnderRoc(), getDELTA());
+        assertEquals(getEXAMPLE_EVALUATION_NANOS() / 5d, evaluation.getNanosPerRow(), getDELTA());
+        assertEquals(2 / 3d, evaluation.getValue(ModelObjective.PRECISION), getDELTA());
+    }
+
+    @Test
+    public void evaluateWithoutPredictions() {
+        ModelEvaluation evaluation = ModelEvaluation.fromPredictions(new ArrayList<>(), getPOSITIVE_CLASS_INDEX(), 0);
+
+        assertEquals(0, evaluation.getAccuracy(), getDELTA());
+        assertEquals(0, evaluation.getPrecision(), getDELTA());
+        assertEquals(0, evaluation.getRecall(), getDELTA());
+        assertEquals(0, evaluation.getAreaUnderRoc(), getDELTA());
+        assertEquals(0, evaluation.getNanosPerRow(), getDELTA());
+    }
+
+    private static Prediction getPrediction(int actual, double matchProbability) {
+        return new NominalPrediction(actual, new double[]{matchProbability, 1 - matchProbability});
+    }
+}
@@ -0,0 +1,84 @@
+package de.hpi.machinelearning.persistence;
+
+import de.hpi.machinelearning.ModelEvaluation;
+import de.hpi.machinelearning.ModelObjective;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.junit.Test;
+import weka.classifiers.bayes.NaiveBayes;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ModelLeaderboardTest {
+
+    @Getter(AccessLevel.PRIVATE) private static double EXAMPLE_TOLERANCE = 0.001;
+    @Getter(AccessLevel.PRIVATE) private static String SLOW_MODEL = "slow";
+    @Getter(AccessLevel.PRIVATE) private static String FAST_MODEL = "fast";
+    @Getter(AccessLevel.PRIVATE) private static String WORSE_MODEL = "worse";
+    @Getter(AccessLevel.PRIVATE) private static String FAILED_MODEL = "failed";
+
+    @Test
+    public void keepTiedModelsAndChooseFastestOne() {
+        ModelLeaderboard leaderboard = new ModelLeaderboard(Arrays.asList(
+                getModel(getSLOW_MODEL(), 0.9, 200000),
+                getModel(getWORSE_MODEL(), 0.8, 10000000),
+                getModel(getFAST_MODEL(), 0.9, 1000000)), ModelObjective.ACCURACY, getEXAMPLE_TOLERANCE(), 0);
+
+        assertEquals(3, leaderboard.getEntries().size());
+        assertEquals(getFAST_MODEL(), leaderboard.getChosen().getModelType());
+        assertEquals(getFAST_MODEL(), leaderboard.getEntries().get(0).getModelType());
+        assertEquals(getSLOW_MODEL(), leaderboard.getEntries().get(1).getModelType());
+        assertEquals(0.1, leaderboard.getChosen().toScoredModel().getScore(), 1e-9);
+    }
+
+    @Test
+    public void serializeOnlyChosenModel() {
+        ModelLeaderboard leaderboard = new ModelLeaderboard(Arrays.asList(
+                getModel(getSLOW_MODEL(), 0.9, 200000),
+                getModel(getFAST_MODEL(), 0.9, 1000000)), ModelObjective.ACCURACY, getEXAMPLE_TOLERANCE(), 0);
+
+        ScoredModel scoredModel = leaderboard.getChosen().toScoredModel();
+        assertEquals(leaderboard.getChosen().getSerializedSize(), scoredModel.getModelByteArray().length);
+        assertTrue(leaderboard.getEntries().get(1).getSerializedSize() > 0);
+        try {
+            leaderboard.getEntries().get(1).toScoredModel();
+            fail();
+        } catch (IllegalStateException e) {
+            assertFalse(leaderboard.getEntries().get(1).isChosen());
+        }
+    }
+
+    @Test
+    public void neverChooseFailedModels() {
+        LabeledModel failedModel = new LabeledModel(new NaiveBayes(), getFAILED_MODEL());
+        failedModel.setFailure(new IllegalStateException());
+
+        ModelLeaderboard leaderboard = new ModelLeaderboard(Arrays.asList(failedModel,
+                getModel(getWORSE_MODEL(), 0.8, 10000000)), ModelObjective.ACCURACY, getEXAMPLE_TOLERANCE(), 0);
+        assertEquals(getWORSE_MODEL(), leaderboard.getChosen().getModelType());
+        assertTrue(leaderboard.getEntries().get(1).isFailed());
+
+        leaderboard = new ModelLeaderboard(Arrays.asList(failedModel), ModelObjective.ACCURACY, getEXAMPLE_TOLERANCE(), 0);
+        assertNull(leaderboard.getChosen());
+    }
+
+    @Test
+    public void rejectModelsBelowMinimumThroughput() {
+        ModelLeaderboard leaderboard = new ModelLeaderboard(Arrays.asList(
+                getModel(getSLOW_MODEL(), 0.95, 200000),
+                getModel(getWORSE_MODEL(), 0.8, 10000000)), ModelObjective.ACCURACY, getEXAMPLE_TOLERANCE(), 500000);
+
+        assertEquals(getWORSE_MODEL(), leaderboard.getChosen().getModelType());
+        assertTrue(leaderboard.getEntries().get(1).isRejected());
+        assertEquals(10000000, leaderboard.getChosen().toScoredModel().getRowsPerSecond(), 1e-9);
+    }
+
+    private static LabeledModel getModel(String modelType, double accuracy, double rowsPerSecond) {
+        LabeledModel model = new LabeledModel(new NaiveBayes(), modelType);
+        model.setEvaluation(new ModelEvaluation(accuracy, accuracy, accuracy, accuracy, 1e9 / rowsPerSecond));
+        model.setRowsPerSecond(rowsPerSecond);
+        return model;
+    }
+}
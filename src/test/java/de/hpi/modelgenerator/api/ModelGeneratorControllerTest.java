@@ -1,9 +1,13 @@
 package de.hpi.modelgenerator.api;
 
 import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+import de.hpi.modelgenerator.persistence.TrainingJob;
 import de.hpi.modelgenerator.services.ModelGeneratorService;
+import de.hpi.modelgenerator.services.TrainingJobService;
+import de.hpi.modelgenerator.services.TrainingPipeline;
 import lombok.AccessLevel;
 import lombok.Getter;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,10 +16,19 @@ import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.concurrent.RejectedExecutionException;
+
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,12 +36,28 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @Getter(AccessLevel.PRIVATE)
 public class ModelGeneratorControllerTest {
 
+    @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_JOB_ID = "1234";
+    @Getter(AccessLevel.PRIVATE) private final static TrainingJob EXAMPLE_JOB = new TrainingJob("example");
+
     @Autowired
     private MockMvc mockMvc;
 
     @MockBean
     private ModelGeneratorService service;
 
+    @MockBean
+    private TrainingJobService jobService;
+
+    @MockBean
+    private TrainingPipeline pipeline;
+
+    @Before
+    public void setup() {
+        doAnswer(invocation -> {
+            invocation.<TrainingJobService.TrainingTask>getArgument(1).run();
+            return getEXAMPLE_JOB();
+        }).when(getJobService()).submit(anyString(), any(TrainingJobService.TrainingTask.class));
+    }
 
     @Test
     public void generateCategoryClassifier() throws Exception {
@@ -65,17 +94,51 @@ public class ModelGeneratorControllerTest {
 
     @Test
     public void generateAllClassifiers() throws Exception {
-        doNothing().when(getService()).generateCategoryClassifier(any(ClassifierTrainingState.class));
-        doNothing().when(getService()).generateBrandClassifier(any(ClassifierTrainingState.class));
-        doNothing().when(getService()).generateModel(any(ClassifierTrainingState.class));
-        doNothing().when(getService()).freeTestingSet();
+        doNothing().when(getPipeline()).generateAllClassifiers(any(ClassifierTrainingState.class),
+                any(ClassifierTrainingState.class), any(ClassifierTrainingState.class));
 
         getMockMvc()
                 .perform(post("/generateAllClassifiers"))
                 .andExpect(status().isOk());
 
-        verify(getService()).generateCategoryClassifier(any(ClassifierTrainingState.class));
-        verify(getService()).generateBrandClassifier(any(ClassifierTrainingState.class));
-        verify(getService()).generateModel(any(ClassifierTrainingState.class));
+        verify(getPipeline()).generateAllClassifiers(any(ClassifierTrainingState.class),
+                any(ClassifierTrainingState.class), any(ClassifierTrainingState.class));
+    }
+
+    @Test
+    public void returnQueuedJob() throws Exception {
+        getMockMvc()
+                .perform(post("/generateModel"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(getEXAMPLE_JOB().getId()));
+    }
+
+    @Test
+    public void rejectJobWhenQueueIsFull() throws Exception {
+        doThrow(new RejectedExecutionException()).when(getJobService())
+                .submit(anyString(), any(TrainingJobService.TrainingTask.class));
+
+        getMockMvc()
+                .perform(post("/generateModel"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void getAndCancelJob() throws Exception {
+        doReturn(getEXAMPLE_JOB()).when(getJobService()).getJob(getEXAMPLE_JOB().getId());
+        doReturn(getEXAMPLE_JOB()).when(getJobService()).cancel(getEXAMPLE_JOB().getId());
+
+        getMockMvc()
+                .perform(get("/jobs/" + getEXAMPLE_JOB().getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phase").value("QUEUED"));
+        getMockMvc()
+                .perform(delete("/jobs/" + getEXAMPLE_JOB().getId()))
+                .andExpect(status().isOk());
+        getMockMvc()
+                .perform(get("/jobs/" + getEXAMPLE_JOB_ID()))
+                .andExpect(status().isNotFound());
+
+        verify(getJobService()).cancel(getEXAMPLE_JOB().getId());
     }
-}
\ No newline at end of file
+}
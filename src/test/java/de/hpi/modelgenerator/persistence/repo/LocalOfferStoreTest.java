@@ -0,0 +1,120 @@
+package de.hpi.modelgenerator.persistence.repo;
+
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import de.hpi.modelgenerator.properties.CacheProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+public class LocalOfferStoreTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_SHOP_ID = 1234;
+    @Getter(AccessLevel.PRIVATE) private final static String FIRST_OFFER_KEY = "first";
+    @Getter(AccessLevel.PRIVATE) private final static String SECOND_OFFER_KEY = "second";
+    @Getter(AccessLevel.PRIVATE) private final static String THIRD_OFFER_KEY = "third";
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_MAX_ENTRIES = 2;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_TIME_TO_LIVE_HOURS = 1;
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock private CacheProperties properties;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(true).when(getProperties()).isLocalStoreEnabled();
+        doReturn(getEXAMPLE_MAX_ENTRIES()).when(getProperties()).getLocalStoreMaxEntries();
+        doReturn(getEXAMPLE_TIME_TO_LIVE_HOURS()).when(getProperties()).getLocalStoreTimeToLiveHours();
+    }
+
+    @Test
+    public void removeLeastRecentlyUsedOffer() {
+        LocalOfferStore store = getStore();
+        store.put(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY(), getOffer(getFIRST_OFFER_KEY()));
+        store.put(getEXAMPLE_SHOP_ID(), getSECOND_OFFER_KEY(), getOffer(getSECOND_OFFER_KEY()));
+        assertNotNull(store.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY()));
+
+        store.put(getEXAMPLE_SHOP_ID(), getTHIRD_OFFER_KEY(), getOffer(getTHIRD_OFFER_KEY()));
+
+        assertNull(store.get(getEXAMPLE_SHOP_ID(), getSECOND_OFFER_KEY()));
+        assertEquals(getFIRST_OFFER_KEY(), store.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY()).getOfferKey());
+        assertEquals(getTHIRD_OFFER_KEY(), store.get(getEXAMPLE_SHOP_ID(), getTHIRD_OFFER_KEY()).getOfferKey());
+        assertEquals(getEXAMPLE_MAX_ENTRIES(), countFiles());
+    }
+
+    @Test
+    public void removeExpiredOfferOnRead() throws Exception {
+        LocalOfferStore store = getStore();
+        store.put(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY(), getOffer(getFIRST_OFFER_KEY()));
+        assertNotNull(store.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY()));
+
+        doReturn(0L).when(getProperties()).getLocalStoreTimeToLiveHours();
+        Thread.sleep(10);
+
+        assertNull(store.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY()));
+        assertEquals(0, countFiles());
+        assertTrue(store.getStatistics().startsWith("1 hits, 1 misses"));
+    }
+
+    @Test
+    public void reloadStoredOffers() {
+        LocalOfferStore store = getStore();
+        store.put(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY(), getOffer(getFIRST_OFFER_KEY()));
+        store.put(getEXAMPLE_SHOP_ID(), getSECOND_OFFER_KEY(), getOffer(getSECOND_OFFER_KEY()));
+        File expiredFile = getFiles()[0];
+        assertTrue(expiredFile.setLastModified(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(2)));
+
+        LocalOfferStore reloadedStore = getStore();
+
+        assertFalse(expiredFile.exists());
+        assertEquals(1, countFiles());
+        assertTrue(reloadedStore.getStatistics().endsWith("1 stored offers"));
+        ShopOffer first = reloadedStore.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY());
+        ShopOffer second = reloadedStore.get(getEXAMPLE_SHOP_ID(), getSECOND_OFFER_KEY());
+        assertTrue(first == null ^ second == null);
+    }
+
+    @Test
+    public void storeNothingWhenDisabled() {
+        doReturn(false).when(getProperties()).isLocalStoreEnabled();
+        LocalOfferStore store = getStore();
+        store.put(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY(), getOffer(getFIRST_OFFER_KEY()));
+
+        assertNull(store.get(getEXAMPLE_SHOP_ID(), getFIRST_OFFER_KEY()));
+        assertEquals(0, countFiles());
+    }
+
+    private LocalOfferStore getStore() {
+        return new LocalOfferStore(getProperties(), getFolder().getRoot());
+    }
+
+    private File[] getFiles() {
+        File shopDirectory = new File(getFolder().getRoot(), String.valueOf(getEXAMPLE_SHOP_ID()));
+        File[] files = shopDirectory.listFiles((dir, name) -> name.endsWith(".json"));
+        return (files == null) ? new File[0] : files;
+    }
+
+    private int countFiles() {
+        return getFiles().length;
+    }
+
+    private static ShopOffer getOffer(String offerKey) {
+        ShopOffer offer = new ShopOffer();
+        offer.setOfferKey(offerKey);
+        offer.setShopId(getEXAMPLE_SHOP_ID());
+        return offer;
+    }
+}
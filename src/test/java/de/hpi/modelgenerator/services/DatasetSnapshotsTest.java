@@ -0,0 +1,107 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.MatchingResult;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class DatasetSnapshotsTest {
+
+    // about 1.2 MB per snapshot, so a new snapshot does not fit next to a referenced one within 1 MB
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_MATCHES = 600;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_BUDGET_MEGABYTES = 1;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_WAIT_TIMEOUT_SECONDS = 1;
+
+    @Mock private ModelGeneratorProperties properties;
+
+    private DatasetSnapshots snapshots;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(getEXAMPLE_WAIT_TIMEOUT_SECONDS()).when(getProperties()).getDatasetWaitTimeoutSeconds();
+        setSnapshots(new DatasetSnapshots(getProperties()));
+    }
+
+    @Test
+    public void keepEvictedSnapshotWhileReferenced() {
+        DatasetReference dataset = acquire();
+        getSnapshots().evict();
+
+        assertEquals(getEXAMPLE_MATCHES(), dataset.getTrainingSet().size());
+        try(DatasetReference reloadedDataset = acquire()) {
+            assertNotEquals(dataset.getVersion(), reloadedDataset.getVersion());
+        }
+        try(DatasetReference cachedDataset = acquire()) {
+            assertEquals(dataset.getVersion() + 1, cachedDataset.getVersion());
+        }
+        dataset.close();
+        dataset.close();
+
+        assertEquals(2, getLoads().get());
+    }
+
+    @Test
+    public void waitForMemoryBudget() throws Exception {
+        doReturn(getEXAMPLE_BUDGET_MEGABYTES()).when(getProperties()).getDatasetMemoryBudgetMegabytes();
+        doReturn(0L).when(getProperties()).getDatasetWaitTimeoutSeconds();
+        DatasetReference dataset = acquire();
+        getSnapshots().evict();
+
+        CompletableFuture<DatasetReference> reload = CompletableFuture.supplyAsync(this::acquire);
+        try {
+            reload.get(200, TimeUnit.MILLISECONDS);
+            fail("The load should wait until the old snapshot is released");
+        } catch (TimeoutException e) {
+            assertEquals(1, getLoads().get());
+        }
+
+        dataset.close();
+        try(DatasetReference reloadedDataset = reload.get(5, TimeUnit.SECONDS)) {
+            assertEquals(dataset.getVersion() + 1, reloadedDataset.getVersion());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void timeOutWaitingForMemoryBudget() {
+        doReturn(getEXAMPLE_BUDGET_MEGABYTES()).when(getProperties()).getDatasetMemoryBudgetMegabytes();
+        try(DatasetReference dataset = acquire()) {
+            getSnapshots().evict();
+            acquire();
+        }
+    }
+
+    private DatasetReference acquire() {
+        return getSnapshots().acquire(version -> {
+            getLoads().incrementAndGet();
+            return new DatasetSnapshot(version, getMatches(), getMatches());
+        });
+    }
+
+    private static List<MatchingResult> getMatches() {
+        List<MatchingResult> matches = new ArrayList<>();
+        for(int i = 0; i < getEXAMPLE_MATCHES(); i++) {
+            matches.add(new MatchingResult());
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,99 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.machinelearning.HnswIndex;
+import de.hpi.machinelearning.LabelSeeker;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.deeplearning4j.models.embeddings.inmemory.InMemoryLookupTable;
+import org.deeplearning4j.models.word2vec.VocabWord;
+import org.deeplearning4j.models.word2vec.wordstore.inmemory.AbstractCache;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.primitives.Pair;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HnswIndexTest {
+
+    @Getter(AccessLevel.PRIVATE) private static int LABEL_COUNT = 1000;
+    @Getter(AccessLevel.PRIVATE) private static int HELD_OUT_COUNT = 200;
+    @Getter(AccessLevel.PRIVATE) private static int LAYER_SIZE = 50;
+    @Getter(AccessLevel.PRIVATE) private static int EXAMPLE_M = 16;
+    @Getter(AccessLevel.PRIVATE) private static int EXAMPLE_EF_CONSTRUCTION = 100;
+    @Getter(AccessLevel.PRIVATE) private static int EXAMPLE_EF_SEARCH = 64;
+    @Getter(AccessLevel.PRIVATE) private static long EXAMPLE_SEED = 42L;
+    @Getter(AccessLevel.PRIVATE) private static double MINIMUM_AGREEMENT = 0.95;
+
+    @Getter(AccessLevel.PRIVATE) private static InMemoryLookupTable<VocabWord> lookupTable;
+    @Getter(AccessLevel.PRIVATE) private static LabelSeeker labelSeeker;
+    @Getter(AccessLevel.PRIVATE) private static HnswIndex index;
+
+    @BeforeClass
+    public static void setup() {
+        AbstractCache<VocabWord> vocab = new AbstractCache.Builder<VocabWord>().build();
+        List<String> labels = new ArrayList<>();
+        for(int i = 0; i < getLABEL_COUNT() + getHELD_OUT_COUNT(); i++) {
+            VocabWord word = new VocabWord(1.0, getWord(i));
+            word.setIndex(i);
+            vocab.addToken(word);
+            vocab.addWordToIndex(i, getWord(i));
+            if(i < getLABEL_COUNT()) {
+                labels.add(getWord(i));
+            }
+        }
+
+        lookupTable = new InMemoryLookupTable.Builder<VocabWord>()
+                .vectorLength(getLAYER_SIZE())
+                .cache(vocab)
+                .seed(getEXAMPLE_SEED())
+                .build();
+        getLookupTable().resetWeights(true);
+
+        labelSeeker = new LabelSeeker(labels, getLookupTable());
+        index = new HnswIndex(labels, getLabelSeeker().getLabelVectors(), getEXAMPLE_M(),
+                getEXAMPLE_EF_CONSTRUCTION(), getEXAMPLE_EF_SEARCH(), getEXAMPLE_SEED());
+    }
+
+    @Test
+    public void agreeWithExactLabelSeeker() {
+        int agreements = 0;
+        for(int i = getLABEL_COUNT(); i < getLABEL_COUNT() + getHELD_OUT_COUNT(); i++) {
+            INDArray vector = getLookupTable().vector(getWord(i));
+            Pair<String, Double> exact = getLabelSeeker().getTopLabels(vector, 1).get(0);
+            Pair<String, Double> approximate = getIndex().search(vector.dup().data().asFloat(), 1).get(0);
+
+            if(exact.getLeft().equals(approximate.getLeft())) {
+                agreements++;
+                assertEquals(exact.getRight(), approximate.getRight(), 0.0001);
+            }
+        }
+
+        assertTrue((double) agreements / getHELD_OUT_COUNT() >= getMINIMUM_AGREEMENT());
+    }
+
+    @Test
+    public void returnTopLabelsInDescendingOrder() {
+        List<Pair<String, Double>> labels = getIndex().search(getLookupTable().vector(getWord(getLABEL_COUNT())).dup().data().asFloat(), 10);
+
+        assertEquals(10, labels.size());
+        for(int i = 1; i < labels.size(); i++) {
+            assertTrue(labels.get(i - 1).getRight() >= labels.get(i).getRight());
+        }
+    }
+
+    @Test
+    public void findIndexedLabelItself() {
+        Pair<String, Double> label = getIndex().search(getLookupTable().vector(getWord(0)).dup().data().asFloat(), 1).get(0);
+
+        assertEquals(getWord(0), label.getLeft());
+        assertEquals(1d, label.getRight(), 0.0001);
+    }
+
+    private static String getWord(int index) {
+        return "word" + index;
+    }
+}
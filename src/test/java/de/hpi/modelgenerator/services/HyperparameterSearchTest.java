@@ -0,0 +1,144 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.machinelearning.persistence.ParagraphVectorsTrial;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.text.documentiterator.LabelledDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import weka.classifiers.bayes.NaiveBayes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyFloat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class HyperparameterSearchTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_TRIALS = 4;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_TRAINING_THREADS = 2;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_WORKERS = 8;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_BUDGET_SECONDS = 1;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_SLOW_TRIAL_SECONDS = 60;
+
+    @Mock private ModelGeneratorProperties properties;
+    @Mock private MatchingModels matchingModels;
+    @Mock private NeuralNetClassifier neuralNetClassifier;
+
+    private HyperparameterSearch search;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(getEXAMPLE_TRIALS()).when(getProperties()).getHyperparameterSearchTrials();
+        doReturn(getEXAMPLE_BUDGET_SECONDS()).when(getProperties()).getHyperparameterSearchBudgetSeconds();
+        doReturn(getEXAMPLE_BUDGET_SECONDS()).when(getProperties()).getParagraphVectorsSearchBudgetSeconds();
+        doReturn(getEXAMPLE_TRAINING_THREADS()).when(getMatchingModels()).getTrainingThreads();
+        setSearch(new HyperparameterSearch(getProperties(), getMatchingModels(), getNeuralNetClassifier()));
+    }
+
+    @Test
+    public void cancelTrialsAtBudget() throws Exception {
+        doAnswer(invocation -> {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(getEXAMPLE_SLOW_TRIAL_SECONDS()));
+            return getModel("RandomForest");
+        }).when(getMatchingModels()).getRandomForest(any(), anyInt(), anyInt());
+        doReturn(getModel("IBk")).when(getMatchingModels()).getKNN(any(), anyInt());
+        doReturn(getModel("J48")).when(getMatchingModels()).getJ48(any(), anyFloat());
+        doReturn(getModel("AdaBoost")).when(getMatchingModels()).getAdaBoost(any(), anyInt());
+
+        long start = System.currentTimeMillis();
+        List<LabeledModel> models = getSearch().searchMatchingModels(null, null);
+
+        assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(getEXAMPLE_SLOW_TRIAL_SECONDS()) / 2);
+        assertEquals(getEXAMPLE_TRIALS() - 1, models.size());
+        for(LabeledModel model : models) {
+            assertNotEquals("RandomForest", model.getModelType());
+        }
+    }
+
+    @Test
+    public void keepBestParagraphVectors() {
+        List<ParagraphVectors> networks = new ArrayList<>();
+        List<LabelledDocument> testingSet = new ArrayList<>();
+        doAnswer(invocation -> {
+            ParagraphVectors paragraphVectors = mock(ParagraphVectors.class);
+            synchronized (networks) {
+                networks.add(paragraphVectors);
+            }
+            return paragraphVectors;
+        }).when(getNeuralNetClassifier()).getParagraphVectors(any(), any(), anyInt(), anyInt(), anyInt(), anyInt());
+        doAnswer(invocation -> {
+            synchronized (networks) {
+                return networks.indexOf(invocation.<ParagraphVectors>getArgument(0)) == 2 ? 0.9 : 0.5;
+            }
+        }).when(getNeuralNetClassifier()).checkUnlabeledData(any(), eq(testingSet));
+
+        ParagraphVectorsTrial best = getSearch().searchParagraphVectors(new ArrayList<>(), testingSet, getEXAMPLE_WORKERS());
+
+        assertEquals(getEXAMPLE_TRIALS(), networks.size());
+        assertSame(networks.get(2), best.getParagraphVectors());
+        assertEquals(0.9, best.getAccuracy(), 0);
+        verify(getNeuralNetClassifier(), times(getEXAMPLE_TRIALS())).getParagraphVectors(any(), any(), anyInt(), anyInt(),
+                anyInt(), eq(getEXAMPLE_WORKERS() / getEXAMPLE_TRAINING_THREADS()));
+    }
+
+    @Test
+    public void waitForTrialsThatIgnoreInterrupts() {
+        AtomicBoolean trialRunning = new AtomicBoolean();
+        doAnswer(invocation -> {
+            trialRunning.set(true);
+            // like Weka, the training does not stop when it is interrupted
+            long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(getEXAMPLE_BUDGET_SECONDS() * 2);
+            while(System.currentTimeMillis() < end) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    // ignored
+                }
+            }
+            trialRunning.set(false);
+            return getModel("RandomForest");
+        }).when(getMatchingModels()).getRandomForest(any(), anyInt(), anyInt());
+        doReturn(getModel("IBk")).when(getMatchingModels()).getKNN(any(), anyInt());
+        doReturn(getModel("J48")).when(getMatchingModels()).getJ48(any(), anyFloat());
+        doReturn(getModel("AdaBoost")).when(getMatchingModels()).getAdaBoost(any(), anyInt());
+
+        List<LabeledModel> models = getSearch().searchMatchingModels(null, null);
+
+        assertFalse(trialRunning.get());
+        assertEquals(getEXAMPLE_TRIALS() - 1, models.size());
+    }
+
+    @Test
+    public void rejectParagraphVectorsOfInterruptedTrial() {
+        doAnswer(invocation -> mock(ParagraphVectors.class)).when(getNeuralNetClassifier())
+                .getParagraphVectors(any(), any(), anyInt(), anyInt(), anyInt(), anyInt());
+        doAnswer(invocation -> {
+            // the budget is used up while the network is evaluated
+            Thread.currentThread().interrupt();
+            return 0.9;
+        }).when(getNeuralNetClassifier()).checkUnlabeledData(any(), any());
+
+        assertNull(getSearch().searchParagraphVectors(new ArrayList<>(), new ArrayList<>(), getEXAMPLE_WORKERS()));
+    }
+
+    private static LabeledModel getModel(String modelType) {
+        return new LabeledModel(new NaiveBayes(), modelType);
+    }
+}
@@ -0,0 +1,123 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.machinelearning.EvaluationMode;
+import de.hpi.machinelearning.ModelEvaluation;
+import de.hpi.machinelearning.persistence.AttributeVector;
+import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class MatchingModelsTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_ROWS = 40;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_FOLDS = 4;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_TRAINING_THREADS = 2;
+    @Getter(AccessLevel.PRIVATE) private final static double MINIMUM_METRIC = 0.85;
+    @Getter(AccessLevel.PRIVATE) private final static double DELTA = 1e-9;
+
+    @Mock private ModelGeneratorProperties properties;
+
+    private MatchingModels matchingModels;
+    private Instances trainingSet;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(EvaluationMode.CROSS_VALIDATION).when(getProperties()).getEvaluationMode();
+        doReturn(getEXAMPLE_FOLDS()).when(getProperties()).getCrossValidationFolds();
+        doReturn(getEXAMPLE_TRAINING_THREADS()).when(getProperties()).getTrainingThreads();
+        setMatchingModels(new MatchingModels(getProperties()));
+        setTrainingSet(getSeparableInstances());
+    }
+
+    @After
+    public void teardown() {
+        getMatchingModels().shutdown();
+    }
+
+    @Test
+    public void buildRandomForestOnFreeTrainingThreads() {
+        RandomForest alone = (RandomForest) getMatchingModels().getRandomForest(getTrainingSet(), 0).getModel();
+        RandomForest withOthers = (RandomForest) getMatchingModels().getRandomForest(getTrainingSet(), 5).getModel();
+
+        assertEquals(getEXAMPLE_TRAINING_THREADS(), alone.getNumExecutionSlots());
+        assertEquals(1, withOthers.getNumExecutionSlots());
+    }
+
+    @Test
+    public void crossValidateModelsConcurrently() throws Exception {
+        LabeledModel randomForest = getMatchingModels().getRandomForest(getTrainingSet(), 0);
+        LabeledModel j48 = getMatchingModels().getJ48(getTrainingSet());
+        LabeledModel adaBoost = getMatchingModels().getAdaBoost(getTrainingSet());
+
+        CompletableFuture<ModelEvaluation> randomForestEvaluation = evaluateAsync(randomForest);
+        CompletableFuture<ModelEvaluation> j48Evaluation = evaluateAsync(j48);
+        CompletableFuture<ModelEvaluation> adaBoostEvaluation = evaluateAsync(adaBoost);
+
+        for(ModelEvaluation evaluation : Arrays.asList(randomForestEvaluation.get(), j48Evaluation.get(), adaBoostEvaluation.get())) {
+            assertTrue(evaluation.getAccuracy() > getMINIMUM_METRIC());
+            assertTrue(evaluation.getRecall() > getMINIMUM_METRIC());
+            assertTrue(evaluation.getAreaUnderRoc() > getMINIMUM_METRIC());
+            assertTrue(evaluation.getNanosPerRow() > 0);
+        }
+    }
+
+    @Test
+    public void evaluateEmptyTestingSet() throws Exception {
+        doReturn(EvaluationMode.HOLDOUT).when(getProperties()).getEvaluationMode();
+        LabeledModel j48 = getMatchingModels().getJ48(getTrainingSet());
+
+        ModelEvaluation evaluation = getMatchingModels().evaluate(j48, getTrainingSet(), new Instances(getTrainingSet(), 0));
+
+        assertEquals(0, evaluation.getAccuracy(), getDELTA());
+        assertEquals(0, evaluation.getAreaUnderRoc(), getDELTA());
+    }
+
+    private CompletableFuture<ModelEvaluation> evaluateAsync(LabeledModel model) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return getMatchingModels().evaluate(model, getTrainingSet(), getTrainingSet());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * Half of the offer pairs are matches with a high similarity, the other half are non-matches with a low one.
+     */
+    private static Instances getSeparableInstances() {
+        ArrayList<String> booleans = new ArrayList<>(Arrays.asList(AttributeVector.TRUE, AttributeVector.FALSE));
+        ArrayList<Attribute> attributes = new ArrayList<>(Arrays.asList(
+                new Attribute("similarity"), new Attribute("isMatch", booleans)));
+        Instances instances = new Instances("matches", attributes, getEXAMPLE_ROWS());
+        instances.setClassIndex(1);
+        for(int row = 0; row < getEXAMPLE_ROWS(); row++) {
+            boolean match = row % 2 == 0;
+            double similarity = (match ? 0.7 : 0) + 0.3 * row / getEXAMPLE_ROWS();
+            instances.add(new DenseInstance(1, new double[]{similarity, match ? 0 : 1}));
+        }
+        return instances;
+    }
+}
@@ -1,11 +1,15 @@
 package de.hpi.modelgenerator.services;
 
+import de.hpi.machinelearning.ModelEvaluation;
+import de.hpi.machinelearning.ModelObjective;
 import de.hpi.machinelearning.persistence.LabeledModel;
+import de.hpi.machinelearning.persistence.ModelLeaderboard;
 import de.hpi.machinelearning.persistence.ScoredModel;
 import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
 import de.hpi.modelgenerator.persistence.MatchingResult;
 import de.hpi.modelgenerator.persistence.ParsedOffer;
-import de.hpi.modelgenerator.persistence.repo.Cache;
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import de.hpi.modelgenerator.persistence.TrainingSlotMode;
 import de.hpi.modelgenerator.persistence.repo.MatchingResultRepository;
 import de.hpi.modelgenerator.persistence.repo.ModelFileRepository;
 import de.hpi.modelgenerator.persistence.repo.ModelMongoRepository;
@@ -17,17 +21,23 @@ import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.nd4j.linalg.primitives.Pair;
 import weka.classifiers.Classifier;
 import weka.classifiers.meta.AdaBoostM1;
 import weka.core.Instances;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
+import static org.junit.Assert.*;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.any;
@@ -41,14 +51,15 @@ import static org.mockito.MockitoAnnotations.initMocks;
 public class ModelGeneratorServiceTest {
 
     @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_SHOP_ID = 1234L;
-    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_RESULTS_PER_SHOP = 2;
     @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_MAX_RESULTS = 2;
     @Getter(AccessLevel.PRIVATE) private final static double EXAMPLE_TEST_SET_PERCENTAGE = 0.5;
     @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_TITLE = "iPhone7";
     @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_BRAND = "Apple";
+    @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_BRAND_CLASSIFIER_VERSION = "1";
     @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_CATEGORY = "1234";
     @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_OFFER_KEY = "1234";
     @Getter(AccessLevel.PRIVATE) private final static LabeledModel EXAMPLE_MODEL = new LabeledModel(new AdaBoostM1(), "example");
+    @Getter(AccessLevel.PRIVATE) private final static ModelEvaluation EXAMPLE_EVALUATION = new ModelEvaluation(0.5, 0.5, 0.5, 0.5, 1000);
     public static final String BRAND = "brand";
     public static final String CATEGORY = "category";
 
@@ -57,29 +68,40 @@ public class ModelGeneratorServiceTest {
 
     @Mock private MatchingResultRepository matchingResultRepository;
     @Mock private ModelMongoRepository modelRepository;
-    @Mock private Cache cache;
+    @Mock private OfferFetchPipeline offerFetchPipeline;
     @Mock private ModelGeneratorProperties properties;
     @Mock private MatchingModels matchingModels;
     @Mock private ProbabilityClassifier probabilityClassifier;
     @Mock private NeuralNetClassifier neuralNetClassifier;
+    @Mock private HyperparameterSearch hyperparameterSearch;
     @Mock private ParagraphVectors paragraphVectors;
     @Mock private Classifier classifier;
-    @Mock private ClassifierTrainingState state;
+    private final ClassifierTrainingState state = new ClassifierTrainingState("example");
 
+    private TrainingSlots trainingSlots;
+    private DatasetSnapshots datasets;
     private ModelGeneratorService service;
 
     @Before
     public void setup() {
         initMocks(this);
 
+        doReturn(1).when(getProperties()).getMaxConcurrentTrainings();
+        doReturn(1).when(getProperties()).getMaxConcurrentTrainingsPerClassifier();
+        doReturn(TrainingSlotMode.REJECT).when(getProperties()).getTrainingSlotMode();
+        setTrainingSlots(new TrainingSlots(getProperties()));
+        setDatasets(new DatasetSnapshots(getProperties()));
         setService(new ModelGeneratorService(
                 getModelRepository(),
                 getProperties(),
                 getMatchingResultRepository(),
-                getCache(),
+                getOfferFetchPipeline(),
                 getNeuralNetClassifier(),
                 getMatchingModels(),
-                getProbabilityClassifier()
+                getProbabilityClassifier(),
+                getHyperparameterSearch(),
+                getTrainingSlots(),
+                getDatasets()
         ));
 
         ParsedOffer parsedOffer = new ParsedOffer();
@@ -96,76 +118,131 @@ public class ModelGeneratorServiceTest {
         shopIds.add(getEXAMPLE_SHOP_ID());
 
         doReturn(getEXAMPLE_MAX_RESULTS()).when(getProperties()).getMaximumMatchesForLearning();
-        doReturn(getEXAMPLE_RESULTS_PER_SHOP()).when(getProperties()).getMatchesPerShop();
         doReturn(getEXAMPLE_TEST_SET_PERCENTAGE()).when(getProperties()).getTrainingSetPercentage();
         doReturn(shopIds).when(getMatchingResultRepository()).getShopIds();
-        doReturn(getExampleMatchingResults()).when(getMatchingResultRepository()).getMatches(anyLong(), anyInt());
+        doAnswer(invocation -> getExampleMatchingResults().stream()).when(getMatchingResultRepository()).streamMatches(anyLong());
     }
 
 
     @Test
     public void setTrainingAndTestingSet() {
-        getService().setTrainingAndTestingSet();
+        try(DatasetReference dataset = getService().getDataset()) {
+            assertEquals(1, dataset.getTrainingSet().size());
+            assertEquals(1, dataset.getTestingSet().size());
+        }
 
         verify(getMatchingResultRepository()).getShopIds();
-        verify(getMatchingResultRepository(), times(1)).getMatches(anyLong(), anyInt());
+        verify(getMatchingResultRepository(), times(1)).streamMatches(anyLong());
+    }
+
+    @Test
+    public void shareDatasetUntilLastTrainingReleasesIt() {
+        DatasetReference dataset = getService().getDataset();
+        getService().freeTestingSet();
+        assertEquals(1, dataset.getTrainingSet().size());
+
+        try(DatasetReference reloadedDataset = getService().getDataset()) {
+            assertNotEquals(dataset.getVersion(), reloadedDataset.getVersion());
+        }
+        try(DatasetReference cachedDataset = getService().getDataset()) {
+            assertEquals(dataset.getVersion() + 1, cachedDataset.getVersion());
+        }
+        dataset.close();
+
+        verify(getMatchingResultRepository(), times(2)).streamMatches(anyLong());
     }
 
     @Test
     public void generateCategoryClassifier() throws IOException {
-        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList());
+        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList(), anyList(), anyInt());
         doNothing().when(getModelRepository()).save(any(ParagraphVectors.class), eq(CATEGORY));
 
         getService().generateCategoryClassifier(getState());
 
-        verify(getNeuralNetClassifier()).getParagraphVectors(anyList());
+        verify(getNeuralNetClassifier()).getParagraphVectors(anyList(), anyList(), anyInt());
         verify(getModelRepository()).save(any(ParagraphVectors.class), eq(CATEGORY));
-        verify(getState()).isCurrentlyLearning();
-        verify(getState()).setCurrentlyLearning(true);
-        verify(getState()).setCurrentlyLearning(false);
+        assertFalse(getState().isCurrentlyLearning());
     }
 
     @Test
     public void generateBrandClassifier() throws IOException {
-        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList());
+        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList(), anyList(), anyInt());
         doNothing().when(getModelRepository()).save(any(ParagraphVectors.class), eq(BRAND));
 
         getService().generateBrandClassifier(getState());
 
-        verify(getNeuralNetClassifier()).getParagraphVectors(anyList());
+        verify(getNeuralNetClassifier()).getParagraphVectors(anyList(), anyList(), anyInt());
         verify(getModelRepository()).save(any(ParagraphVectors.class), eq(BRAND));
-        verify(getState()).isCurrentlyLearning();
-        verify(getState()).setCurrentlyLearning(true);
-        verify(getState()).setCurrentlyLearning(false);
+        assertFalse(getState().isCurrentlyLearning());
     }
 
     @Test
-    public void generateModel() throws IOException {
-        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList());
-        doReturn(true).when(getModelRepository()).brandClassifierExists();
-        doNothing().when(getModelRepository()).save(any(ScoredModel.class));
+    public void generateModel() throws Exception {
+        prepareModelGeneration();
+
+        getService().generateModel(getState());
+        verify(getOfferFetchPipeline(), times(2)).fetch(anyList(), any());
+        verify(getMatchingModels()).getAdaBoost(argThat(instances -> instances.size() == 1));
+        verify(getMatchingModels(), times(6)).evaluate(any(LabeledModel.class),
+                argThat(instances -> instances.size() == 1), argThat(instances -> instances.size() == 1));
+        verify(getMatchingModels()).getJ48(any(Instances.class));
+        verify(getMatchingModels()).getKNN(any(Instances.class));
+        verify(getMatchingModels()).getNaiveBayes(any(Instances.class));
+        verify(getMatchingModels()).getRandomForest(any(Instances.class), eq(5));
+        verify(getMatchingModels()).getLogistic(any(Instances.class));
+        verify(getMatchingModels(), times(6)).measureThroughput(any(LabeledModel.class), any(Instances.class));
+        verify(getModelRepository()).save(any(ScoredModel.class));
+        verify(getModelRepository()).save(any(ModelLeaderboard.class));
+        assertFalse(getState().isCurrentlyLearning());
+    }
 
+    @Test
+    public void classifyBrandsOncePerDatasetSnapshot() throws Exception {
+        prepareModelGeneration();
+        doReturn(getEXAMPLE_BRAND_CLASSIFIER_VERSION()).when(getProbabilityClassifier()).getBrandClassifierVersion();
+        doAnswer(invocation -> invocation.<List<String>>getArgument(0).stream()
+                .map(title -> new Pair<>(getEXAMPLE_BRAND(), 1.0))
+                .collect(Collectors.toList())).when(getProbabilityClassifier()).getBrands(anyList());
 
+        getService().generateModel(getState());
+        getService().generateModel(getState());
+        verify(getProbabilityClassifier(), times(1)).getBrands(anyList());
+
+        getService().freeTestingSet();
+        getService().generateModel(getState());
+        verify(getProbabilityClassifier(), times(2)).getBrands(anyList());
+        assertNull(getExampleMatchingResults().get(0).getClassifiedBrand());
+    }
+
+    private void prepareModelGeneration() throws IOException {
+        doReturn(getParagraphVectors()).when(getNeuralNetClassifier()).getParagraphVectors(anyList(), anyList(), anyInt());
+        doReturn(true).when(getModelRepository()).brandClassifierExists();
+        doNothing().when(getModelRepository()).save(any(ScoredModel.class));
         doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getLogistic(any(Instances.class));
         doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getAdaBoost(any(Instances.class));
         doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getJ48(any(Instances.class));
         doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getKNN(any(Instances.class));
         doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getNaiveBayes(any(Instances.class));
-        doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getRandomForest(any(Instances.class));
-        doReturn(null).when(getCache()).getOffer(anyLong(), anyString());
-        doReturn(1d).when(getMatchingModels()).getClassificationError(any(Classifier.class), any(Instances.class));
+        doReturn(getEXAMPLE_MODEL()).when(getMatchingModels()).getRandomForest(any(Instances.class), anyInt());
+        doAnswer(invocation -> {
+            List<OfferRequest> requests = invocation.getArgument(0);
+            BiConsumer<OfferRequest, ShopOffer> consumer = invocation.getArgument(1);
+            for(OfferRequest request : requests) {
+                consumer.accept(request, getShopOffer(request.getOfferKey()));
+            }
+            return new OfferFetchMetrics(requests.size());
+        }).when(getOfferFetchPipeline()).fetch(anyList(), any());
+        doReturn(getEXAMPLE_EVALUATION()).when(getMatchingModels()).evaluate(any(LabeledModel.class), any(Instances.class), any(Instances.class));
+        doReturn(ModelObjective.ACCURACY).when(getProperties()).getSelectionObjective();
+    }
 
-        getService().generateModel(getState());
-        verify(getMatchingModels()).getAdaBoost(any(Instances.class));
-        verify(getMatchingModels()).getJ48(any(Instances.class));
-        verify(getMatchingModels()).getKNN(any(Instances.class));
-        verify(getMatchingModels()).getNaiveBayes(any(Instances.class));
-        verify(getMatchingModels()).getRandomForest(any(Instances.class));
-        verify(getMatchingModels()).getLogistic(any(Instances.class));
-        verify(getModelRepository()).save(any(ScoredModel.class));
-        verify(getState()).isCurrentlyLearning();
-        verify(getState()).setCurrentlyLearning(true);
-        verify(getState()).setCurrentlyLearning(false);
+    private static ShopOffer getShopOffer(String offerKey) {
+        ShopOffer shopOffer = new ShopOffer();
+        shopOffer.setOfferKey(offerKey);
+        shopOffer.setShopId(getEXAMPLE_SHOP_ID());
+        shopOffer.setBrandName(getEXAMPLE_BRAND());
+        shopOffer.setTitles(Collections.singletonMap("0", getEXAMPLE_TITLE()));
+        return shopOffer;
     }
 
     @Test(expected = IllegalStateException.class)
@@ -175,4 +252,28 @@ public class ModelGeneratorServiceTest {
         getService().generateModel(getState());
 
     }
+
+    @Test
+    public void releaseSlotWhenTrainingFails() throws IOException {
+        doReturn(false).when(getModelRepository()).brandClassifierExists();
+
+        try {
+            getService().generateModel(getState());
+            fail();
+        } catch (IllegalStateException e) {
+            assertFalse(getState().isCurrentlyLearning());
+            assertEquals(0, getTrainingSlots().getActiveTrainings());
+        }
+    }
+
+    @Test
+    public void rejectTrainingWithoutFreeSlot() throws IOException {
+        try(TrainingSlot slot = getTrainingSlots().acquire(getState())) {
+            getService().generateCategoryClassifier(getState());
+            fail();
+        } catch (IllegalStateException e) {
+            verify(getNeuralNetClassifier(), never()).getParagraphVectors(anyList(), anyList(), anyInt());
+        }
+        assertFalse(getState().isCurrentlyLearning());
+    }
 }
\ No newline at end of file
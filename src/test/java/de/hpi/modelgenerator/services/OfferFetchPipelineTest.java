@@ -0,0 +1,200 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ShopOffer;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.repo.Cache;
+import de.hpi.modelgenerator.persistence.repo.LocalOfferStore;
+import de.hpi.modelgenerator.properties.CacheProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class OfferFetchPipelineTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_SHOPS = 2;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_OFFERS_PER_SHOP = 10;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_MAX_IN_FLIGHT_REQUESTS_PER_SHOP = 2;
+    // enough threads for all lanes, so only the per-shop limit bounds the requests in flight
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_LANES = EXAMPLE_SHOPS * EXAMPLE_MAX_IN_FLIGHT_REQUESTS_PER_SHOP;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_FETCH_QUEUE_CAPACITY = 1;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_TIMEOUT_SECONDS = 10;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_STOPPED_MILLIS = 200;
+
+    @Mock private Cache cache;
+    @Mock private CacheProperties properties;
+    @Mock private LocalOfferStore localOfferStore;
+
+    private OfferFetchPipeline pipeline;
+    private final Map<Long, AtomicInteger> inFlightRequests = new ConcurrentHashMap<>();
+    private final AtomicInteger maxInFlightRequests = new AtomicInteger();
+    private final AtomicInteger cacheRequests = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(1).when(getProperties()).getOfferBatchSize();
+        doReturn(getEXAMPLE_LANES()).when(getProperties()).getMaxConcurrentRequests();
+        doReturn(getEXAMPLE_MAX_IN_FLIGHT_REQUESTS_PER_SHOP()).when(getProperties()).getMaxInFlightRequestsPerShop();
+        doReturn(getEXAMPLE_FETCH_QUEUE_CAPACITY()).when(getProperties()).getFetchQueueCapacity();
+        setPipeline(new OfferFetchPipeline(getCache(), getProperties(), getLocalOfferStore()));
+    }
+
+    @After
+    public void teardown() {
+        getRelease().countDown();
+        getPipeline().shutdown();
+        TrainingJob.setCurrent(null);
+    }
+
+    @Test
+    public void limitInFlightRequestsPerShop() {
+        // every request waits until all lanes have a request in flight, so a lane too many would be observed
+        CountDownLatch allLanesInFlight = new CountDownLatch(getEXAMPLE_LANES());
+        stubCache(allLanesInFlight::countDown, () -> allLanesInFlight.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        Set<Integer> consumedIndices = ConcurrentHashMap.newKeySet();
+        TrainingJob job = new TrainingJob("model");
+        TrainingJob.setCurrent(job);
+
+        OfferFetchMetrics metrics = getPipeline().fetch(getRequests(), (request, offer) -> {
+            assertEquals(request.getOfferKey(), offer.getOfferKey());
+            assertTrue(consumedIndices.add(request.getIndex()));
+        });
+
+        int offers = getEXAMPLE_SHOPS() * getEXAMPLE_OFFERS_PER_SHOP();
+        assertEquals(0, allLanesInFlight.getCount());
+        assertEquals(getEXAMPLE_MAX_IN_FLIGHT_REQUESTS_PER_SHOP(), getMaxInFlightRequests().get());
+        assertEquals(offers, consumedIndices.size());
+        assertEquals(offers, metrics.getRequestedOffers());
+        assertEquals(offers, metrics.getFetchedOffers().get());
+        assertEquals(offers, metrics.getProcessedOffers().get());
+        assertEquals(0, metrics.getInFlightRequests().get());
+        assertEquals(metrics.getOffersPerSecond(), job.getFetchedOffersPerSecond(), 0);
+        assertEquals(0, job.getInFlightRequests());
+    }
+
+    @Test
+    public void pauseFetchingWhileConsumerLags() throws Exception {
+        // while the consumer holds the first offer, every lane holds one fetched batch and one batch is queued
+        int maxPendingBatches = getEXAMPLE_FETCH_QUEUE_CAPACITY() + getEXAMPLE_LANES();
+        CountDownLatch lanesBlocked = new CountDownLatch(maxPendingBatches + 1);
+        stubCache(lanesBlocked::countDown, () -> true);
+        AtomicInteger consumedBatches = new AtomicInteger();
+        AtomicInteger observedPendingBatches = new AtomicInteger();
+
+        getPipeline().fetch(getRequests(), (request, offer) -> {
+            if(consumedBatches.incrementAndGet() == 1) {
+                awaitQuietly(lanesBlocked);
+            }
+            observedPendingBatches.accumulateAndGet(getCacheRequests().get() - consumedBatches.get(), Math::max);
+        });
+
+        assertEquals(0, lanesBlocked.getCount());
+        assertEquals(maxPendingBatches, observedPendingBatches.get());
+        assertEquals(getEXAMPLE_SHOPS() * getEXAMPLE_OFFERS_PER_SHOP(), consumedBatches.get());
+    }
+
+    @Test
+    public void cancelLanesWhenConsumerFails() {
+        // the first request returns, every further request waits until the consumer failed
+        AtomicBoolean firstRequest = new AtomicBoolean(true);
+        stubCache(() -> {}, () -> firstRequest.getAndSet(false)
+                || getRelease().await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        IllegalStateException failure = new IllegalStateException("consumer failed");
+        try {
+            getPipeline().fetch(getRequests(), (request, offer) -> {
+                throw failure;
+            });
+            fail("The failure of the consumer should be thrown by fetch");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+        getRelease().countDown();
+
+        // every lane finishes at most the request it started before the failure and does not start another one
+        verify(getCache(), after(getEXAMPLE_STOPPED_MILLIS()).atMost(getEXAMPLE_LANES() + 1))
+                .getOffers(anyLong(), anyCollection());
+    }
+
+    private void stubCache(Runnable onRequest, Gate gate) {
+        doAnswer(invocation -> {
+            long shopId = invocation.getArgument(0);
+            Collection<String> offerKeys = invocation.getArgument(1);
+            getCacheRequests().incrementAndGet();
+            AtomicInteger shopRequests = getInFlightRequests().computeIfAbsent(shopId, id -> new AtomicInteger());
+            getMaxInFlightRequests().accumulateAndGet(shopRequests.incrementAndGet(), Math::max);
+            try {
+                onRequest.run();
+                if(!gate.await()) {
+                    throw new IllegalStateException("Timed out waiting for the other requests.");
+                }
+            } finally {
+                shopRequests.decrementAndGet();
+            }
+            Map<String, ShopOffer> offers = new HashMap<>();
+            for(String offerKey : offerKeys) {
+                offers.put(offerKey, getOffer(shopId, offerKey));
+            }
+            return offers;
+        }).when(getCache()).getOffers(anyLong(), anyCollection());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<OfferRequest> getRequests() {
+        List<OfferRequest> requests = new ArrayList<>();
+        for(int shopId = 0; shopId < getEXAMPLE_SHOPS(); shopId++) {
+            for(int i = 0; i < getEXAMPLE_OFFERS_PER_SHOP(); i++) {
+                requests.add(new OfferRequest(shopId, shopId + "-" + i, requests.size()));
+            }
+        }
+        return requests;
+    }
+
+    private static ShopOffer getOffer(long shopId, String offerKey) {
+        ShopOffer offer = new ShopOffer();
+        offer.setOfferKey(offerKey);
+        offer.setShopId(shopId);
+        return offer;
+    }
+
+    /**
+     * Decides when a stubbed cache request returns.
+     */
+    private interface Gate {
+
+        boolean await() throws InterruptedException;
+
+    }
+}
@@ -0,0 +1,53 @@
+package de.hpi.modelgenerator.services;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.deeplearning4j.models.paragraphvectors.ParagraphVectors;
+import org.deeplearning4j.models.sequencevectors.enums.ListenerEvent;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+@Getter(AccessLevel.PRIVATE)
+public class ParagraphVectorsListenerTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_PATIENCE = 2;
+    @Getter(AccessLevel.PRIVATE) private final static double EXAMPLE_MIN_DELTA = 0.01;
+
+    private final ParagraphVectors paragraphVectors = mock(ParagraphVectors.class);
+
+    @Test
+    public void stopWhenAccuracyPlateaus() {
+        Iterator<Double> accuracies = Arrays.asList(0.5, 0.6, 0.605, 0.6, 0.7).iterator();
+        ParagraphVectorsListener listener = new ParagraphVectorsListener(paragraphVectors -> accuracies.next(),
+                getEXAMPLE_PATIENCE(), getEXAMPLE_MIN_DELTA());
+
+        int epochs = 0;
+        try {
+            while(accuracies.hasNext()) {
+                listener.processEvent(ListenerEvent.EPOCH, getParagraphVectors(), epochs++);
+            }
+            fail();
+        } catch (ParagraphVectorsListener.EarlyStopping e) {
+            assertTrue(listener.isStopped());
+            assertEquals(4, epochs);
+        }
+    }
+
+    @Test
+    public void trainAllEpochsWithoutPatience() {
+        ParagraphVectorsListener listener = new ParagraphVectorsListener(paragraphVectors -> 0.5, 0, getEXAMPLE_MIN_DELTA());
+
+        for(int epoch = 0; epoch < 5; epoch++) {
+            listener.processEvent(ListenerEvent.EPOCH, getParagraphVectors(), epoch);
+        }
+
+        assertFalse(listener.isStopped());
+        assertTrue(listener.validateEvent(ListenerEvent.EPOCH, 0));
+        assertFalse(listener.validateEvent(ListenerEvent.ITERATION, 0));
+    }
+}
@@ -0,0 +1,64 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.machinelearning.StratifiedReservoirSampler;
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StratifiedReservoirSamplerTest {
+
+    @Getter(AccessLevel.PRIVATE) private static int EXAMPLE_BUDGET = 3000;
+    @Getter(AccessLevel.PRIVATE) private static long EXAMPLE_SEED = 42L;
+    @Getter(AccessLevel.PRIVATE) private static long SMALL_SHOP_ID = 1L;
+    @Getter(AccessLevel.PRIVATE) private static long LARGE_SHOP_ID = 2L;
+    @Getter(AccessLevel.PRIVATE) private static long OTHER_LARGE_SHOP_ID = 3L;
+    @Getter(AccessLevel.PRIVATE) private static int SMALL_SHOP_SIZE = 100;
+    @Getter(AccessLevel.PRIVATE) private static int LARGE_SHOP_SIZE = 50000;
+
+    @Test
+    public void fillBudgetAndRedistributeUnusedShare() {
+        List<Long> sample = getSample(getEXAMPLE_SEED());
+
+        assertEquals(getEXAMPLE_BUDGET(), sample.size());
+        assertEquals(getSMALL_SHOP_SIZE(), sample.stream().filter(id -> id == getSMALL_SHOP_ID()).count());
+        assertEquals((getEXAMPLE_BUDGET() - getSMALL_SHOP_SIZE()) / 2, sample.stream().filter(id -> id == getLARGE_SHOP_ID()).count());
+    }
+
+    @Test
+    public void keepAllElementsWhenBudgetIsNotReached() {
+        StratifiedReservoirSampler<Integer> sampler = new StratifiedReservoirSampler<>(getEXAMPLE_BUDGET(), getEXAMPLE_SEED());
+        for(int i = 0; i < getSMALL_SHOP_SIZE(); i++) {
+            sampler.getStratum(getSMALL_SHOP_ID()).add(i);
+        }
+
+        assertEquals(getSMALL_SHOP_SIZE(), sampler.getSample().size());
+    }
+
+    @Test
+    public void sameSeedResultsInSameSample() {
+        StratifiedReservoirSampler<Integer> first = new StratifiedReservoirSampler<>(getEXAMPLE_BUDGET(), getEXAMPLE_SEED());
+        StratifiedReservoirSampler<Integer> second = new StratifiedReservoirSampler<>(getEXAMPLE_BUDGET(), getEXAMPLE_SEED());
+        for(int i = 0; i < getLARGE_SHOP_SIZE(); i++) {
+            first.getStratum(getLARGE_SHOP_ID()).add(i);
+            second.getStratum(getLARGE_SHOP_ID()).add(i);
+        }
+
+        assertEquals(first.getSample(), second.getSample());
+    }
+
+    private List<Long> getSample(long seed) {
+        StratifiedReservoirSampler<Long> sampler = new StratifiedReservoirSampler<>(getEXAMPLE_BUDGET(), seed);
+        for(int i = 0; i < getLARGE_SHOP_SIZE(); i++) {
+            sampler.getStratum(getLARGE_SHOP_ID()).add(getLARGE_SHOP_ID());
+            sampler.getStratum(getOTHER_LARGE_SHOP_ID()).add(getOTHER_LARGE_SHOP_ID());
+            if(i < getSMALL_SHOP_SIZE()) {
+                sampler.getStratum(getSMALL_SHOP_ID()).add(getSMALL_SHOP_ID());
+            }
+        }
+        return sampler.getSample();
+    }
+}
@@ -1,5 +1,6 @@
 package de.hpi.modelgenerator.services;
 
+import de.hpi.machinelearning.NGramSimilarity;
 import de.hpi.machinelearning.TextSimilarityCalculator;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -12,9 +13,13 @@ public class TextSimilarityCalculatorTest {
     @Getter(AccessLevel.PRIVATE) private static String EXAMPLE_STRING = "abc def ghi jkl";
     @Getter(AccessLevel.PRIVATE) private static String EXAMPLE_DIFFERENT_STRING = "mno pgr stu vwx";
     @Getter(AccessLevel.PRIVATE) private static String EXAMPLE_EMPTY_STRING = "";
+    @Getter(AccessLevel.PRIVATE) private static String EXAMPLE_PARTIAL_STRING = "abc def";
+    @Getter(AccessLevel.PRIVATE) private static String EXAMPLE_OTHER_PARTIAL_STRING = "ABC xyz";
     @Getter(AccessLevel.PRIVATE) private static double EXPECTED_MATCH_SIMILARITY = 1d;
     @Getter(AccessLevel.PRIVATE) private static double EXPECTED_DIFFERENCE_SIMILARITY = 0d;
     @Getter(AccessLevel.PRIVATE) private static double EXPECTED_EMPTY_SIMILARITY = -1d;
+    @Getter(AccessLevel.PRIVATE) private static double EXPECTED_PARTIAL_JACCARD_SIMILARITY = 2d / 7d;
+    @Getter(AccessLevel.PRIVATE) private static double EXPECTED_PARTIAL_COSINE_SIMILARITY = 4d / 9d;
 
     @Test
     public void jaccardSimilarityMatch() {
@@ -56,4 +61,29 @@ public class TextSimilarityCalculatorTest {
         assertEquals(getEXPECTED_EMPTY_SIMILARITY(), TextSimilarityCalculator.cosineSimilarity(getEXAMPLE_STRING(), getEXAMPLE_EMPTY_STRING()), 0.01);
     }
 
+    @Test
+    public void jaccardSimilarityPartialMatch() {
+        assertEquals(getEXPECTED_PARTIAL_JACCARD_SIMILARITY(), TextSimilarityCalculator.jaccardSimilarity(getEXAMPLE_PARTIAL_STRING(), getEXAMPLE_OTHER_PARTIAL_STRING()), 0.0001);
+    }
+
+    @Test
+    public void cosineSimilarityPartialMatch() {
+        assertEquals(getEXPECTED_PARTIAL_COSINE_SIMILARITY(), TextSimilarityCalculator.cosineSimilarity(getEXAMPLE_PARTIAL_STRING(), getEXAMPLE_OTHER_PARTIAL_STRING()), 0.0001);
+    }
+
+    @Test
+    public void combinedSimilarityEqualsSingleSimilarities() {
+        NGramSimilarity similarity = NGramSimilarity.forCurrentThread();
+        similarity.compare(getEXAMPLE_PARTIAL_STRING(), getEXAMPLE_OTHER_PARTIAL_STRING());
+        double jaccard = similarity.getJaccard();
+        double cosine = similarity.getCosine();
+
+        similarity.compare(getEXAMPLE_STRING(), getEXAMPLE_EMPTY_STRING());
+        assertEquals(getEXPECTED_EMPTY_SIMILARITY(), similarity.getJaccard(), 0.01);
+        assertEquals(getEXPECTED_EMPTY_SIMILARITY(), similarity.getCosine(), 0.01);
+
+        assertEquals(TextSimilarityCalculator.jaccardSimilarity(getEXAMPLE_PARTIAL_STRING(), getEXAMPLE_OTHER_PARTIAL_STRING()), jaccard, 0.0001);
+        assertEquals(TextSimilarityCalculator.cosineSimilarity(getEXAMPLE_PARTIAL_STRING(), getEXAMPLE_OTHER_PARTIAL_STRING()), cosine, 0.0001);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,137 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingJobStatus;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class TrainingJobServiceTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static String EXAMPLE_TYPE = "model";
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_QUEUE_CAPACITY = 1;
+    @Getter(AccessLevel.PRIVATE) private final static int EXAMPLE_RETAINED_JOBS = 1;
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_TIMEOUT_SECONDS = 10;
+
+    @Mock private ModelGeneratorService service;
+    @Mock private ModelGeneratorProperties properties;
+
+    private TrainingJobService jobService;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(1).when(getProperties()).getTrainingJobThreads();
+        doReturn(getEXAMPLE_QUEUE_CAPACITY()).when(getProperties()).getTrainingJobQueueCapacity();
+        doReturn(getEXAMPLE_RETAINED_JOBS()).when(getProperties()).getRetainedTrainingJobs();
+        setJobService(new TrainingJobService(getService(), getProperties()));
+    }
+
+    @After
+    public void teardown() {
+        getRelease().countDown();
+        getJobService().shutdown();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void rejectJobsWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        getJobService().submit(getEXAMPLE_TYPE(), () -> {
+            started.countDown();
+            getRelease().await();
+        });
+        assertTrue(started.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        getJobService().submit(getEXAMPLE_TYPE(), () -> {});
+
+        try {
+            getJobService().submit(getEXAMPLE_TYPE(), () -> {});
+        } finally {
+            assertEquals(2, getJobService().getAllJobs().size());
+        }
+    }
+
+    @Test
+    public void cancelQueuedJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean queuedJobRan = new AtomicBoolean();
+        TrainingJob runningJob = getJobService().submit(getEXAMPLE_TYPE(), () -> {
+            started.countDown();
+            getRelease().await();
+        });
+        assertTrue(started.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        TrainingJob queuedJob = getJobService().submit(getEXAMPLE_TYPE(), () -> queuedJobRan.set(true));
+
+        getJobService().cancel(queuedJob.getId());
+        assertEquals(TrainingJobStatus.CANCELLED, queuedJob.getStatus());
+        assertTrue(queuedJob.isFinished());
+        assertNull(queuedJob.getStartedAt());
+
+        getRelease().countDown();
+        awaitFinished(runningJob);
+        assertEquals(TrainingJobStatus.SUCCEEDED, runningJob.getStatus());
+        assertFalse(queuedJobRan.get());
+        assertFalse(queuedJob.start());
+        assertEquals(TrainingJobStatus.CANCELLED, queuedJob.getStatus());
+    }
+
+    @Test
+    public void cancelRunningJob() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        TrainingJob job = getJobService().submit(getEXAMPLE_TYPE(), () -> {
+            started.countDown();
+            while(true) {
+                TrainingJob.current().checkCancelled();
+                Thread.sleep(10);
+            }
+        });
+        assertTrue(started.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+
+        getJobService().cancel(job.getId());
+        awaitFinished(job);
+
+        assertEquals(TrainingJobStatus.CANCELLED, job.getStatus());
+        assertNotNull(job.getStartedAt());
+        verify(getService(), timeout(TimeUnit.SECONDS.toMillis(getEXAMPLE_TIMEOUT_SECONDS()))).freeTestingSet();
+    }
+
+    @Test
+    public void keepOnlyRetainedFinishedJobs() throws Exception {
+        TrainingJob firstJob = getJobService().submit(getEXAMPLE_TYPE(), () -> {});
+        awaitFinished(firstJob);
+        // finished jobs are ordered by the time they finished
+        Thread.sleep(20);
+        TrainingJob secondJob = getJobService().submit(getEXAMPLE_TYPE(), () -> {});
+        awaitFinished(secondJob);
+        TrainingJob thirdJob = getJobService().submit(getEXAMPLE_TYPE(), () -> getRelease().await());
+
+        assertNull(getJobService().getJob(firstJob.getId()));
+        assertSame(secondJob, getJobService().getJob(secondJob.getId()));
+        assertSame(thirdJob, getJobService().getJob(thirdJob.getId()));
+    }
+
+    private void awaitFinished(TrainingJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(getEXAMPLE_TIMEOUT_SECONDS());
+        while(!job.isFinished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(job.isFinished());
+    }
+}
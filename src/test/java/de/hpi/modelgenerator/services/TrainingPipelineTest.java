@@ -0,0 +1,150 @@
+package de.hpi.modelgenerator.services;
+
+import de.hpi.modelgenerator.persistence.ClassifierTrainingState;
+import de.hpi.modelgenerator.persistence.TrainingJob;
+import de.hpi.modelgenerator.persistence.TrainingJobStatus;
+import de.hpi.modelgenerator.properties.ModelGeneratorProperties;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+@Getter(AccessLevel.PRIVATE)
+@Setter(AccessLevel.PRIVATE)
+public class TrainingPipelineTest {
+
+    @Getter(AccessLevel.PRIVATE) private final static long EXAMPLE_TIMEOUT_SECONDS = 10;
+
+    @Mock private ModelGeneratorService service;
+    @Mock private ModelGeneratorProperties properties;
+    private final ClassifierTrainingState categoryState = new ClassifierTrainingState("category");
+    private final ClassifierTrainingState brandState = new ClassifierTrainingState("brand");
+    private final ClassifierTrainingState modelState = new ClassifierTrainingState("model");
+    private final TrainingJob job = new TrainingJob("all classifiers");
+
+    private TrainingPipeline pipeline;
+
+    @Before
+    public void setup() {
+        initMocks(this);
+
+        doReturn(2).when(getProperties()).getMaxConcurrentTrainings();
+        doAnswer(invocation -> new DatasetSnapshots(getProperties())
+                .acquire(version -> new DatasetSnapshot(version, new ArrayList<>(), new ArrayList<>())))
+                .when(getService()).getDataset();
+        setPipeline(new TrainingPipeline(getService(), getProperties()));
+        TrainingJob.setCurrent(getJob());
+    }
+
+    @After
+    public void teardown() {
+        TrainingJob.setCurrent(null);
+    }
+
+    @Test
+    public void trainCategoryAndBrandClassifierConcurrently() throws Exception {
+        CountDownLatch brandStarted = new CountDownLatch(1);
+        AtomicBoolean brandFinished = new AtomicBoolean();
+        doAnswer(invocation -> {
+            assertEquals("category classifier", TrainingJob.current().getType());
+            assertTrue(brandStarted.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+            return null;
+        }).when(getService()).generateCategoryClassifier(eq(getCategoryState()), any(DatasetReference.class));
+        doAnswer(invocation -> {
+            brandStarted.countDown();
+            brandFinished.set(true);
+            return null;
+        }).when(getService()).generateBrandClassifier(eq(getBrandState()), any(DatasetReference.class));
+        doAnswer(invocation -> {
+            assertTrue(brandFinished.get());
+            return null;
+        }).when(getService()).generateModel(eq(getModelState()), any(DatasetReference.class));
+
+        getPipeline().generateAllClassifiers(getCategoryState(), getBrandState(), getModelState());
+
+        verify(getService()).getDataset();
+        verify(getService()).generateCategoryClassifier(eq(getCategoryState()), any(DatasetReference.class));
+        verify(getService()).generateModel(eq(getModelState()), any(DatasetReference.class));
+        verify(getService(), times(2)).freeTestingSet();
+        assertEquals(3, getJob().getProcessed());
+        assertEquals(3, getJob().getStages().size());
+        for(TrainingJob stage : getJob().getStages()) {
+            assertEquals(TrainingJobStatus.SUCCEEDED, stage.getStatus());
+        }
+    }
+
+    @Test
+    public void skipModelWhenBrandClassifierFails() throws Exception {
+        doThrow(new IllegalStateException("No free slot")).when(getService())
+                .generateBrandClassifier(eq(getBrandState()), any(DatasetReference.class));
+
+        try {
+            getPipeline().generateAllClassifiers(getCategoryState(), getBrandState(), getModelState());
+            fail("Failure of the brand classifier should fail the pipeline");
+        } catch (IllegalStateException e) {
+            assertEquals("No free slot", e.getMessage());
+        }
+
+        verify(getService()).generateCategoryClassifier(eq(getCategoryState()), any(DatasetReference.class));
+        verify(getService(), never()).generateModel(any(ClassifierTrainingState.class), any(DatasetReference.class));
+        verify(getService(), times(2)).freeTestingSet();
+        assertEquals(TrainingJobStatus.SUCCEEDED, getJob().getStages().get(0).getStatus());
+        assertEquals(TrainingJobStatus.FAILED, getJob().getStages().get(1).getStatus());
+        assertEquals(TrainingJobStatus.CANCELLED, getJob().getStages().get(2).getStatus());
+    }
+
+    @Test
+    public void waitForCancelledStages() throws Exception {
+        CountDownLatch categoryStarted = new CountDownLatch(1);
+        AtomicBoolean categoryStopped = new AtomicBoolean();
+        doAnswer(invocation -> {
+            categoryStarted.countDown();
+            try {
+                while(true) {
+                    TrainingJob.current().checkCancelled();
+                    Thread.sleep(10);
+                }
+            } catch (CancellationException | InterruptedException e) {
+                Thread.interrupted();
+                Thread.sleep(200);
+                categoryStopped.set(true);
+                throw e;
+            }
+        }).when(getService()).generateCategoryClassifier(eq(getCategoryState()), any(DatasetReference.class));
+
+        CompletableFuture<Exception> failure = new CompletableFuture<>();
+        Thread pipelineThread = new Thread(() -> {
+            TrainingJob.setCurrent(getJob());
+            try {
+                getPipeline().generateAllClassifiers(getCategoryState(), getBrandState(), getModelState());
+                failure.complete(null);
+            } catch (Exception e) {
+                failure.complete(e);
+            }
+        });
+        pipelineThread.start();
+        assertTrue(categoryStarted.await(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS));
+        pipelineThread.interrupt();
+
+        assertTrue(failure.get(getEXAMPLE_TIMEOUT_SECONDS(), TimeUnit.SECONDS) instanceof InterruptedException);
+        assertTrue(categoryStopped.get());
+        assertTrue(getJob().isCancelRequested());
+        assertEquals(TrainingJobStatus.CANCELLED, getJob().getStages().get(0).getStatus());
+        verify(getService(), times(2)).freeTestingSet();
+    }
+}